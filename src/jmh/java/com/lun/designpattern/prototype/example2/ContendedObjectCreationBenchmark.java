@@ -0,0 +1,10 @@
+package com.lun.designpattern.prototype.example2;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * 与ObjectCreationBenchmark相同的用例，4个线程共享同一个原型并发创建
+ */
+@Threads(4)
+public class ContendedObjectCreationBenchmark extends ObjectCreationBenchmark {
+}
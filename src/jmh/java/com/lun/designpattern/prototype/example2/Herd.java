@@ -0,0 +1,91 @@
+package com.lun.designpattern.prototype.example2;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试用的对象图：一群羊，包含列表、按名字的索引以及可变的Date
+ */
+public class Herd implements Cloneable, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+	private Date founded;
+	private List<Sheep> sheep = new ArrayList<Sheep>();
+	private Map<String, Sheep> byName = new LinkedHashMap<String, Sheep>();
+
+	private Herd() {
+	}
+
+	/**
+	 * 拷贝构造函数：逐层深复制
+	 */
+	public Herd(Herd other) {
+		this.name = other.name;
+		this.founded = (Date) other.founded.clone();
+		for (Sheep s : other.sheep) {
+			add(new Sheep(s));
+		}
+	}
+
+	private void add(Sheep s) {
+		sheep.add(s);
+		byName.put(s.getSname(), s);
+	}
+
+	/**
+	 * 浅克隆：集合与其中的羊都与原型共享
+	 */
+	public Herd shallowClone() throws CloneNotSupportedException {
+		return (Herd) super.clone();
+	}
+
+	/**
+	 * 手写深克隆：复用Sheep.clone，并重建集合与索引
+	 */
+	public Herd deepClone() throws CloneNotSupportedException {
+		Herd herd = (Herd) super.clone();
+		herd.founded = (Date) founded.clone();
+		herd.sheep = new ArrayList<Sheep>(sheep.size());
+		herd.byName = new LinkedHashMap<String, Sheep>();
+		for (Sheep s : sheep) {
+			herd.add((Sheep) s.clone());
+		}
+		return herd;
+	}
+
+	public int size() {
+		return sheep.size();
+	}
+
+	public static Builder builder(String name) {
+		return new Builder(name);
+	}
+
+	public static class Builder {
+		private final Herd herd = new Herd();
+
+		Builder(String name) {
+			herd.name = name;
+		}
+
+		public Builder founded(long time) {
+			herd.founded = new Date(time);
+			return this;
+		}
+
+		public Builder sheep(String name, long birthday) {
+			herd.add(new Sheep(name, new Date(birthday)));
+			return this;
+		}
+
+		public Herd build() {
+			return herd;
+		}
+	}
+}
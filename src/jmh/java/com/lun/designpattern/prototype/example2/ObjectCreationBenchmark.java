@@ -0,0 +1,155 @@
+package com.lun.designpattern.prototype.example2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 对象创建方式对比：构造函数/Builder、浅克隆、手写深克隆、序列化、DeepCopier、拷贝构造函数
+ *
+ * 原型放在Scope.Benchmark中，多线程运行（见ContendedObjectCreationBenchmark）时所有线程共享同一个原型。
+ * herdSize只属于HerdState，单个Sheep的用例不会随它重复运行。
+ * 运行：mvn -P jmh package && java -jar target/benchmarks.jar ObjectCreation -prof gc
+ * 或直接运行本类的main，会带上GC profiler报告分配速率（gc.alloc.rate.norm为每次操作分配的字节数）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class ObjectCreationBenchmark {
+
+	private static final long BIRTHDAY = 1274397294739L;
+
+	private Sheep sheep;
+
+	@Setup
+	public void setup() {
+		sheep = new Sheep("原型羊", new Date(BIRTHDAY));
+	}
+
+	@State(Scope.Benchmark)
+	public static class HerdState {
+
+		@Param({ "1", "32" })
+		public int herdSize;
+
+		private Herd herd;
+
+		@Setup
+		public void setup() {
+			herd = buildHerd();
+		}
+
+		Herd buildHerd() {
+			Herd.Builder builder = Herd.builder("羊群").founded(BIRTHDAY);
+			for (int i = 0; i < herdSize; i++) {
+				builder.sheep("羊" + i, BIRTHDAY + i);
+			}
+			return builder.build();
+		}
+	}
+
+	private static Object serializationCopy(Object source) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(source);
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		return ois.readObject();
+	}
+
+	// ---------------- 单个Sheep ----------------
+
+	@Benchmark
+	public Sheep sheepConstructor() {
+		return new Sheep("原型羊", new Date(BIRTHDAY));
+	}
+
+	@Benchmark
+	public Sheep sheepShallowClone() throws CloneNotSupportedException {
+		return sheep.shallowClone();
+	}
+
+	@Benchmark
+	public Object sheepDeepClone() throws CloneNotSupportedException {
+		return sheep.clone();
+	}
+
+	@Benchmark
+	public Sheep sheepCopyConstructor() {
+		return new Sheep(sheep);
+	}
+
+	@Benchmark
+	public Object sheepSerialization() throws Exception {
+		return serializationCopy(sheep);
+	}
+
+	@Benchmark
+	public Sheep sheepDeepCopier() {
+		return DeepCopier.copy(sheep);
+	}
+
+	// ---------------- 对象图Herd ----------------
+
+	@Benchmark
+	public Herd herdBuilder(HerdState state) {
+		return state.buildHerd();
+	}
+
+	@Benchmark
+	public Herd herdShallowClone(HerdState state) throws CloneNotSupportedException {
+		return state.herd.shallowClone();
+	}
+
+	@Benchmark
+	public Herd herdDeepClone(HerdState state) throws CloneNotSupportedException {
+		return state.herd.deepClone();
+	}
+
+	@Benchmark
+	public Herd herdCopyConstructor(HerdState state) {
+		return new Herd(state.herd);
+	}
+
+	@Benchmark
+	public Object herdSerialization(HerdState state) throws Exception {
+		return serializationCopy(state.herd);
+	}
+
+	@Benchmark
+	public Herd herdDeepCopier(HerdState state) {
+		return DeepCopier.copy(state.herd);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ObjectCreationBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
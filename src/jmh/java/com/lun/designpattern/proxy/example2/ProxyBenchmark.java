@@ -0,0 +1,141 @@
+package com.lun.designpattern.proxy.example2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.lun.designpattern.proxy.example1.Image;
+
+/**
+ * 代理调用开销对比：直接调用、JDK动态代理、MethodHandleProxyFactory生成的代理
+ *
+ * passthrough只转发调用，timed带上计时（TimerHandler / TimingInterceptor）。
+ * resize带基本类型参数和返回值，JDK动态代理需要装箱，从gc.alloc.rate.norm可以看出每次调用的分配。
+ * 运行：mvn -P jmh package && java -jar target/benchmarks.jar ProxyBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyBenchmark {
+
+	public interface Resizer {
+		long resize(int width, int height);
+	}
+
+	/**
+	 * 不打印的Image，避免输出淹没调用本身的开销
+	 */
+	public static final class CountingImage implements Image {
+		private long displayed;
+
+		@Override
+		public void display() {
+			displayed++;
+		}
+	}
+
+	private static final class ScaleResizer implements Resizer {
+		@Override
+		public long resize(int width, int height) {
+			return (long) width * height * 2;
+		}
+	}
+
+	private Image image;
+	private Image jdkPassthrough;
+	private Image mhPassthrough;
+	private Image jdkTimed;
+	private Image mhTimed;
+
+	private Resizer resizer;
+	private Resizer jdkResizer;
+	private Resizer mhResizer;
+
+	private int width = 640;
+	private int height = 480;
+
+	@Setup
+	public void setup() {
+		image = new CountingImage();
+		jdkPassthrough = jdkProxy(Image.class, image);
+		mhPassthrough = MethodHandleProxyFactory.newProxy(Image.class, image);
+		jdkTimed = new TimerHandler(image).newProxy();
+		mhTimed = MethodHandleProxyFactory.newProxy(Image.class, image, new TimingInterceptor());
+
+		resizer = new ScaleResizer();
+		jdkResizer = jdkProxy(Resizer.class, resizer);
+		mhResizer = MethodHandleProxyFactory.newProxy(Resizer.class, resizer);
+	}
+
+	private static <T> T jdkProxy(Class<T> iface, T target) {
+		InvocationHandler handler = (proxy, method, args) -> method.invoke(target, args);
+		return iface.cast(Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] { iface }, handler));
+	}
+
+	@Benchmark
+	public void displayDirect() {
+		image.display();
+	}
+
+	@Benchmark
+	public void displayJdkProxy() {
+		jdkPassthrough.display();
+	}
+
+	@Benchmark
+	public void displayMethodHandleProxy() {
+		mhPassthrough.display();
+	}
+
+	@Benchmark
+	public void displayJdkProxyTimed() {
+		jdkTimed.display();
+	}
+
+	@Benchmark
+	public void displayMethodHandleProxyTimed() {
+		mhTimed.display();
+	}
+
+	@Benchmark
+	public long resizeDirect() {
+		return resizer.resize(width, height);
+	}
+
+	@Benchmark
+	public long resizeJdkProxy() {
+		return jdkResizer.resize(width, height);
+	}
+
+	@Benchmark
+	public long resizeMethodHandleProxy() {
+		return mhResizer.resize(width, height);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ProxyBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
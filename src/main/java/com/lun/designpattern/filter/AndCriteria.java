@@ -1,6 +1,8 @@
 package com.lun.designpattern.filter;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 public class AndCriteria implements Criteria {
 
@@ -17,4 +19,38 @@ public class AndCriteria implements Criteria {
       List<Person> firstCriteriaPersons = criteria.meetCriteria(persons);        
       return otherCriteria.meetCriteria(firstCriteriaPersons);
    }
-}
\ No newline at end of file
+
+   @Override
+   public BitSet meetCriteria(PersonTable table) {
+      BitSet bitmap = criteria.meetCriteria(table);
+      if (!bitmap.isEmpty()) {
+         bitmap.and(otherCriteria.meetCriteria(table));
+      }
+      return bitmap;
+   }
+
+   @Override
+   public boolean matches(Person person) {
+      return criteria.matches(person) && otherCriteria.matches(person);
+   }
+
+   @Override
+   public boolean matches(PersonRows rows, int row) {
+      return criteria.matches(rows, row) && otherCriteria.matches(rows, row);
+   }
+
+   @Override
+   public IntPredicate rowPredicate(PersonRows rows) {
+      IntPredicate first = criteria.rowPredicate(rows);
+      IntPredicate other = otherCriteria.rowPredicate(rows);
+      return row -> first.test(row) && other.test(row);
+   }
+
+   Criteria getCriteria() {
+      return criteria;
+   }
+
+   Criteria getOtherCriteria() {
+      return otherCriteria;
+   }
+}
@@ -1,7 +1,62 @@
 package com.lun.designpattern.filter;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
 
 public interface Criteria {
 	public List<Person> meetCriteria(List<Person> persons);
+
+	/**
+	 * 单行判断，流式/并行求值时使用
+	 *
+	 * 默认实现借助meetCriteria(List)，每次会分配一个列表，具体标准应覆盖此方法
+	 */
+	public default boolean matches(Person person) {
+		return !meetCriteria(Collections.singletonList(person)).isEmpty();
+	}
+
+	/**
+	 * 基于位图索引求值，返回命中行的位图
+	 *
+	 * 默认实现退化为全表过滤后再映射回行号，具体标准应覆盖此方法直接使用索引
+	 */
+	public default BitSet meetCriteria(PersonTable table) {
+		List<Person> all = new ArrayList<>(table.size());
+		for (int i = 0; i < table.size(); i++) {
+			all.add(table.get(i));
+		}
+		Set<Person> hits = Collections.newSetFromMap(new IdentityHashMap<Person, Boolean>());
+		hits.addAll(meetCriteria(all));
+
+		BitSet bitmap = new BitSet(table.size());
+		for (int i = 0; i < table.size(); i++) {
+			if (hits.contains(table.get(i))) {
+				bitmap.set(i);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * 对编码后的行求值
+	 *
+	 * 默认实现会物化Person，具体标准应覆盖此方法直接比较字典编码
+	 */
+	public default boolean matches(PersonRows rows, int row) {
+		return matches(rows.get(row));
+	}
+
+	/**
+	 * 整表扫描用的行判断：字典编码在这里针对rows解析一次，循环内只比较int
+	 *
+	 * 默认实现逐行调用matches(rows, row)
+	 */
+	public default IntPredicate rowPredicate(PersonRows rows) {
+		return row -> matches(rows, row);
+	}
 }
@@ -0,0 +1,228 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带版本的Criteria结果缓存
+ *
+ * 缓存键为 (标准树的结构键, PersonRepository的版本戳)。结构相同的标准树即使是不同对象也能命中；
+ * And/Or/Not会递归地先查子树，所以先算过的single结果会在求AndCriteria(single, male)时被复用。
+ * 结果以PersonTable上的位图形式缓存，按结果行数之和做LRU淘汰。
+ *
+ * 仓库版本变化后旧版本的结果不可能再命中，整体丢弃并重建PersonTable。
+ * 返回结果按仓库中的顺序排列（与PersonTable.select一致）。
+ *
+ * @author JK
+ *
+ */
+public class CriteriaCache {
+
+	private final PersonRepository repository;
+	private final long maxCachedRows;
+
+	private final LinkedHashMap<Key, BitSet> entries = new LinkedHashMap<Key, BitSet>(16, 0.75f, true);
+	private long cachedRows;
+	private PersonTable table;
+	private long version = -1;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public CriteriaCache(PersonRepository repository, long maxCachedRows) {
+		this.repository = repository;
+		this.maxCachedRows = maxCachedRows;
+	}
+
+	public synchronized List<Person> meetCriteria(Criteria criteria) {
+		refresh();
+		return table.toPersons(evaluate(Key.of(criteria, version)));
+	}
+
+	private void refresh() {
+		//锁住仓库，保证版本戳与快照一致
+		synchronized (repository) {
+			long current = repository.getVersion();
+			if (table != null && current == version) {
+				return;
+			}
+			table = new PersonTable(repository.getPersons());
+			version = current;
+		}
+		entries.clear();
+		cachedRows = 0;
+	}
+
+	private BitSet evaluate(Key key) {
+		BitSet cached = entries.get(key);
+		if (cached != null) {
+			hits++;
+			return cached;
+		}
+		misses++;
+
+		BitSet result;
+		switch (key.kind) {
+		case AND:
+			result = (BitSet) evaluate(key.children.get(0)).clone();
+			result.and(evaluate(key.children.get(1)));
+			break;
+		case OR:
+			result = (BitSet) evaluate(key.children.get(0)).clone();
+			result.or(evaluate(key.children.get(1)));
+			break;
+		case NOT:
+			result = (BitSet) evaluate(key.children.get(0)).clone();
+			result.flip(0, table.size());
+			break;
+		default:
+			result = key.criteria.meetCriteria(table);
+		}
+
+		put(key, result);
+		return result;
+	}
+
+	private void put(Key key, BitSet result) {
+		//空结果也占一个单位，避免大量空结果绕过上限
+		long weight = weight(result);
+		if (weight > maxCachedRows) {
+			return;
+		}
+		entries.put(key, result);
+		cachedRows += weight;
+
+		Iterator<Map.Entry<Key, BitSet>> it = entries.entrySet().iterator();
+		while (cachedRows > maxCachedRows && it.hasNext()) {
+			Map.Entry<Key, BitSet> eldest = it.next();
+			cachedRows -= weight(eldest.getValue());
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static long weight(BitSet result) {
+		return Math.max(1, result.cardinality());
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		cachedRows = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public synchronized long getCachedRows() {
+		return cachedRows;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CriteriaCache [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+				+ ", entries=" + entries.size() + ", cachedRows=" + cachedRows + "]";
+	}
+
+	private enum Kind {
+		AND, OR, NOT, LEAF
+	}
+
+	/**
+	 * 标准树的结构键
+	 *
+	 * 已知无状态的叶子标准按类型比较，其余叶子标准无法判断内部状态，只能按对象identity比较
+	 */
+	private static final class Key {
+
+		private final Kind kind;
+		private final Criteria criteria;
+		private final boolean stateless;
+		private final List<Key> children;
+		private final long version;
+		private final int hash;
+
+		private Key(Kind kind, Criteria criteria, List<Key> children, long version) {
+			this.kind = kind;
+			this.criteria = criteria;
+			this.stateless = criteria != null && (criteria.getClass() == CriteriaMale.class
+					|| criteria.getClass() == CriteriaFemale.class || criteria.getClass() == CriteriaSingle.class);
+			this.children = children;
+			this.version = version;
+
+			int h = kind.hashCode();
+			if (kind == Kind.LEAF) {
+				h = 31 * h + (stateless ? criteria.getClass().hashCode() : System.identityHashCode(criteria));
+			}
+			h = 31 * h + children.hashCode();
+			this.hash = 31 * h + Long.hashCode(version);
+		}
+
+		static Key of(Criteria criteria, long version) {
+			if (criteria instanceof CriteriaPlanner.Plan) {
+				return of(((CriteriaPlanner.Plan) criteria).getCriteria(), version);
+			}
+			if (criteria instanceof AndCriteria) {
+				AndCriteria and = (AndCriteria) criteria;
+				return composite(Kind.AND, version, and.getCriteria(), and.getOtherCriteria());
+			}
+			if (criteria instanceof OrCriteria) {
+				OrCriteria or = (OrCriteria) criteria;
+				return composite(Kind.OR, version, or.getCriteria(), or.getOtherCriteria());
+			}
+			if (criteria instanceof NotCriteria) {
+				return composite(Kind.NOT, version, ((NotCriteria) criteria).getCriteria());
+			}
+			return new Key(Kind.LEAF, criteria, Collections.<Key>emptyList(), version);
+		}
+
+		private static Key composite(Kind kind, long version, Criteria... operands) {
+			List<Key> children = new ArrayList<Key>(operands.length);
+			for (Criteria operand : operands) {
+				children.add(of(operand, version));
+			}
+			return new Key(kind, null, children, version);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (hash != other.hash || kind != other.kind || version != other.version) {
+				return false;
+			}
+			if (kind == Kind.LEAF) {
+				return stateless ? criteria.getClass() == other.criteria.getClass() : criteria == other.criteria;
+			}
+			return children.equals(other.children);
+		}
+	}
+}
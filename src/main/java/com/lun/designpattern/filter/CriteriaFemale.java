@@ -1,7 +1,9 @@
 package com.lun.designpattern.filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 public class CriteriaFemale implements Criteria {
 
@@ -15,4 +17,25 @@ public class CriteriaFemale implements Criteria {
 		}
 		return femalePersons;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public BitSet meetCriteria(PersonTable table) {
+		return table.genderBitmap("FEMALE");
+	}
+
+	@Override
+	public boolean matches(Person person) {
+		return person.getGender().equalsIgnoreCase("FEMALE");
+	}
+
+	@Override
+	public boolean matches(PersonRows rows, int row) {
+		return rows.genderCodeAt(row) == rows.genderCode("FEMALE");
+	}
+
+	@Override
+	public IntPredicate rowPredicate(PersonRows rows) {
+		int female = rows.genderCode("FEMALE");
+		return row -> rows.genderCodeAt(row) == female;
+	}
+}
@@ -1,7 +1,9 @@
 package com.lun.designpattern.filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 public class CriteriaMale implements Criteria {
 
@@ -15,4 +17,25 @@ public class CriteriaMale implements Criteria {
 		}
 		return malePersons;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public BitSet meetCriteria(PersonTable table) {
+		return table.genderBitmap("MALE");
+	}
+
+	@Override
+	public boolean matches(Person person) {
+		return person.getGender().equalsIgnoreCase("MALE");
+	}
+
+	@Override
+	public boolean matches(PersonRows rows, int row) {
+		return rows.genderCodeAt(row) == rows.genderCode("MALE");
+	}
+
+	@Override
+	public IntPredicate rowPredicate(PersonRows rows) {
+		int male = rows.genderCode("MALE");
+		return row -> rows.genderCodeAt(row) == male;
+	}
+}
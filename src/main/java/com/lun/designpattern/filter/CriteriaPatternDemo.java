@@ -1,10 +1,14 @@
 package com.lun.designpattern.filter;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList; 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class CriteriaPatternDemo {
-   public static void main(String[] args) {
+   public static void main(String[] args) throws IOException {
       List<Person> persons = new ArrayList<Person>();
 
       persons.add(new Person("Robert","Male", "Single"));
@@ -31,6 +35,66 @@ public class CriteriaPatternDemo {
 
       System.out.println("\nSingle Or Females: ");
       printPersons(singleOrFemale.meetCriteria(persons));
+
+      //位图索引：先建表，标准之间做按位与/或/非，最后才还原成Person
+      PersonTable table = new PersonTable(persons);
+
+      System.out.println("\nSingle Males (PersonTable): ");
+      printPersons(table.select(singleMale));
+
+      System.out.println("\nSingle Or Females (PersonTable): ");
+      printPersons(table.select(singleOrFemale));
+
+      System.out.println("\nNot Single (PersonTable): ");
+      printPersons(table.select(new NotCriteria(single)));
+
+      //流式管道：filter融合为一次遍历，取够limit条即停止
+      PersonStream stream = PersonStream.of(persons).filter(single).filter(male).limit(2);
+      System.out.println("\nFirst 2 Single Males (PersonStream): ");
+      printPersons(stream.toList());
+      System.out.println("Rows scanned : " + stream.scanned());
+
+      //并行执行：为了演示把阈值设为0、每块2行，实际使用默认值即可
+      ParallelCriteriaExecutor executor = new ParallelCriteriaExecutor(ForkJoinPool.commonPool(), 0, 2);
+      System.out.println("\nSingle Or Females (ParallelCriteriaExecutor): ");
+      printPersons(executor.meetCriteria(singleOrFemale, persons));
+
+      //查询计划：female的选择率更低，会被排到single前面
+      CriteriaPlanner.Plan plan = new CriteriaPlanner(persons).plan(new AndCriteria(single, female));
+      System.out.println("\nSingle Females (CriteriaPlanner): ");
+      printPersons(plan.analyze(persons));
+      System.out.print(plan.explain());
+
+      //内存映射存储：直接在映射区上按字典编码求值，只物化命中的行
+      Path file = Files.createTempFile("persons", ".dat");
+      try {
+         MappedPersonStore.write(file, persons);
+         MappedPersonStore store = MappedPersonStore.open(file);
+         System.out.println("\nSingle Males (MappedPersonStore): ");
+         printPersons(store.toPersons(store.select(singleMale)));
+      } finally {
+         Files.delete(file);
+      }
+
+      //常驻查询：仓库每次变更时增量维护结果，读取不需要重新扫描
+      PersonRepository repository = new PersonRepository();
+      for (Person person : persons) {
+         repository.add(person);
+      }
+      StandingQuery singleOrFemaleQuery = repository.register(singleOrFemale);
+      Person john = persons.get(1);
+      repository.update(john, new Person("John", "Male", "Single"));
+      repository.remove(persons.get(2));
+      System.out.println("\nSingle Or Females (StandingQuery, size " + singleOrFemaleQuery.size() + "): ");
+      printPersons(singleOrFemaleQuery.getResult());
+
+      //结果缓存：结构相同的标准树复用结果，子树single的结果也会被共享
+      CriteriaCache cache = new CriteriaCache(repository, 1000);
+      cache.meetCriteria(new CriteriaSingle());
+      System.out.println("\nSingle Males (CriteriaCache): ");
+      printPersons(cache.meetCriteria(new AndCriteria(new CriteriaSingle(), new CriteriaMale())));
+      cache.meetCriteria(singleMale);
+      System.out.println(cache);
    }
 
    public static void printPersons(List<Person> persons){
@@ -65,4 +129,57 @@ Person : [ Name : Diana, Gender : Female, Marital Status : Single ]
 Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
 Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
 Person : [ Name : Laura, Gender : Female, Marital Status : Married ]
+
+Single Males (PersonTable): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
+
+Single Or Females (PersonTable): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Laura, Gender : Female, Marital Status : Married ]
+Person : [ Name : Diana, Gender : Female, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
+
+Not Single (PersonTable): 
+Person : [ Name : John, Gender : Male, Marital Status : Married ]
+Person : [ Name : Laura, Gender : Female, Marital Status : Married ]
+
+First 2 Single Males (PersonStream): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Rows scanned : 5
+
+Single Or Females (ParallelCriteriaExecutor): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Laura, Gender : Female, Marital Status : Married ]
+Person : [ Name : Diana, Gender : Female, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
+
+Single Females (CriteriaPlanner): 
+Person : [ Name : Diana, Gender : Female, Marital Status : Single ]
+AND (selectivity=0.17, est in=6 out=1, actual in=6 out=1)
+  CriteriaFemale (selectivity=0.33, est in=6 out=2, actual in=6 out=2)
+  CriteriaSingle (selectivity=0.67, est in=2 out=1, actual in=2 out=1)
+
+Single Males (MappedPersonStore): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
+
+Single Or Females (StandingQuery, size 5): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Diana, Gender : Female, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
+Person : [ Name : John, Gender : Male, Marital Status : Single ]
+
+Single Males (CriteriaCache): 
+Person : [ Name : Robert, Gender : Male, Marital Status : Single ]
+Person : [ Name : Mike, Gender : Male, Marital Status : Single ]
+Person : [ Name : Bobby, Gender : Male, Marital Status : Single ]
+Person : [ Name : John, Gender : Male, Marital Status : Single ]
+CriteriaCache [hits=2, misses=3, evictions=0, entries=3, cachedRows=13]
 */
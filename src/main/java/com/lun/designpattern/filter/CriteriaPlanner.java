@@ -0,0 +1,297 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于选择率的Criteria查询计划器
+ *
+ * 对Person总体做等间隔抽样，估算每个节点的选择率，然后重排AND/OR的操作数：
+ * AND按 cost/(1-选择率) 升序，最容易为假的便宜条件先执行；
+ * OR按 cost/选择率 升序，最容易为真的便宜条件先执行。
+ * 嵌套的同类节点会被拍平后一起排序，cost为子树中叶子标准的个数。
+ *
+ * @author JK
+ *
+ */
+public class CriteriaPlanner {
+
+	public static final int DEFAULT_SAMPLE_SIZE = 1024;
+
+	private final List<Person> sample;
+	private final int populationSize;
+
+	public CriteriaPlanner(List<Person> population) {
+		this(population, DEFAULT_SAMPLE_SIZE);
+	}
+
+	public CriteriaPlanner(List<Person> population, int sampleSize) {
+		if (sampleSize <= 0) {
+			throw new IllegalArgumentException("sampleSize must be positive: " + sampleSize);
+		}
+		this.populationSize = population.size();
+		//小数步长：第i个样本取下标 i*N/n，样本均匀覆盖整个总体，不会因步长取整而集中在前部
+		int count = Math.min(populationSize, sampleSize);
+		List<Person> sample = new ArrayList<Person>(count);
+		for (int i = 0; i < count; i++) {
+			sample.add(population.get((int) ((long) i * populationSize / count)));
+		}
+		this.sample = sample;
+	}
+
+	public Plan plan(Criteria criteria) {
+		return new Plan(build(criteria), populationSize);
+	}
+
+	private Node build(Criteria criteria) {
+		Node node;
+		if (criteria instanceof AndCriteria || criteria instanceof OrCriteria) {
+			boolean and = criteria instanceof AndCriteria;
+			List<Criteria> operands = new ArrayList<Criteria>();
+			flatten(criteria, and ? AndCriteria.class : OrCriteria.class, operands);
+
+			node = new Node(and ? Kind.AND : Kind.OR, null);
+			for (Criteria operand : operands) {
+				node.children.add(build(operand));
+			}
+			Collections.sort(node.children, and ? AND_ORDER : OR_ORDER);
+			node.criteria = and ? chainAnd(node.children) : chainOr(node.children);
+		} else if (criteria instanceof NotCriteria) {
+			node = new Node(Kind.NOT, null);
+			node.children.add(build(((NotCriteria) criteria).getCriteria()));
+			node.criteria = new NotCriteria(node.children.get(0).criteria);
+		} else {
+			node = new Node(Kind.LEAF, criteria);
+		}
+
+		for (Node child : node.children) {
+			node.cost += child.cost;
+		}
+		node.selectivity = estimate(node.criteria);
+		return node;
+	}
+
+	private static void flatten(Criteria criteria, Class<?> kind, List<Criteria> operands) {
+		if (kind == AndCriteria.class && criteria instanceof AndCriteria) {
+			flatten(((AndCriteria) criteria).getCriteria(), kind, operands);
+			flatten(((AndCriteria) criteria).getOtherCriteria(), kind, operands);
+		} else if (kind == OrCriteria.class && criteria instanceof OrCriteria) {
+			flatten(((OrCriteria) criteria).getCriteria(), kind, operands);
+			flatten(((OrCriteria) criteria).getOtherCriteria(), kind, operands);
+		} else {
+			operands.add(criteria);
+		}
+	}
+
+	private static Criteria chainAnd(List<Node> children) {
+		Criteria chained = children.get(0).criteria;
+		for (int i = 1; i < children.size(); i++) {
+			chained = new AndCriteria(chained, children.get(i).criteria);
+		}
+		return chained;
+	}
+
+	private static Criteria chainOr(List<Node> children) {
+		Criteria chained = children.get(0).criteria;
+		for (int i = 1; i < children.size(); i++) {
+			chained = new OrCriteria(chained, children.get(i).criteria);
+		}
+		return chained;
+	}
+
+	private double estimate(Criteria criteria) {
+		if (sample.isEmpty()) {
+			return 0.5;
+		}
+		int hits = 0;
+		for (Person person : sample) {
+			if (criteria.matches(person)) {
+				hits++;
+			}
+		}
+		return (double) hits / sample.size();
+	}
+
+	private static final Comparator<Node> AND_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Double.compare(rank(a.cost, 1 - a.selectivity), rank(b.cost, 1 - b.selectivity));
+		}
+	};
+
+	private static final Comparator<Node> OR_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Double.compare(rank(a.cost, a.selectivity), rank(b.cost, b.selectivity));
+		}
+	};
+
+	/**
+	 * 单位代价能够短路掉的行比例越高越靠前
+	 */
+	private static double rank(int cost, double shortCircuitRate) {
+		return shortCircuitRate <= 0 ? Double.MAX_VALUE : cost / shortCircuitRate;
+	}
+
+	private enum Kind {
+		AND, OR, NOT, LEAF
+	}
+
+	private static final class Node {
+		private final Kind kind;
+		private final List<Node> children = new ArrayList<Node>();
+		private Criteria criteria;
+		private int cost;
+		private double selectivity;
+		private long actualIn;
+		private long actualOut;
+
+		Node(Kind kind, Criteria criteria) {
+			this.kind = kind;
+			this.criteria = criteria;
+			this.cost = kind == Kind.LEAF ? 1 : 0;
+		}
+
+		String label() {
+			return kind == Kind.LEAF ? criteria.getClass().getSimpleName() : kind.name();
+		}
+	}
+
+	/**
+	 * 重排后的执行计划，本身也是一个Criteria
+	 */
+	public static final class Plan implements Criteria {
+
+		private final Node root;
+		private final int populationSize;
+		private boolean analyzed;
+
+		private Plan(Node root, int populationSize) {
+			this.root = root;
+			this.populationSize = populationSize;
+		}
+
+		public Criteria getCriteria() {
+			return root.criteria;
+		}
+
+		@Override
+		public List<Person> meetCriteria(List<Person> persons) {
+			return root.criteria.meetCriteria(persons);
+		}
+
+		@Override
+		public BitSet meetCriteria(PersonTable table) {
+			return root.criteria.meetCriteria(table);
+		}
+
+		@Override
+		public boolean matches(Person person) {
+			return root.criteria.matches(person);
+		}
+
+		@Override
+		public boolean matches(PersonRows rows, int row) {
+			return root.criteria.matches(rows, row);
+		}
+
+		@Override
+		public IntPredicate rowPredicate(PersonRows rows) {
+			return root.criteria.rowPredicate(rows);
+		}
+
+		/**
+		 * 按计划顺序对persons逐行求值，记录每个节点实际的输入/输出行数
+		 */
+		public List<Person> analyze(List<Person> persons) {
+			reset(root);
+			List<Person> matched = new ArrayList<Person>();
+			for (Person person : persons) {
+				if (evaluate(root, person)) {
+					matched.add(person);
+				}
+			}
+			analyzed = true;
+			return matched;
+		}
+
+		private static void reset(Node node) {
+			node.actualIn = 0;
+			node.actualOut = 0;
+			for (Node child : node.children) {
+				reset(child);
+			}
+		}
+
+		private static boolean evaluate(Node node, Person person) {
+			node.actualIn++;
+			boolean result;
+			switch (node.kind) {
+			case AND:
+				result = true;
+				for (Node child : node.children) {
+					if (!evaluate(child, person)) {
+						result = false;
+						break;
+					}
+				}
+				break;
+			case OR:
+				result = false;
+				for (Node child : node.children) {
+					if (evaluate(child, person)) {
+						result = true;
+						break;
+					}
+				}
+				break;
+			case NOT:
+				result = !evaluate(node.children.get(0), person);
+				break;
+			default:
+				result = node.criteria.matches(person);
+			}
+			if (result) {
+				node.actualOut++;
+			}
+			return result;
+		}
+
+		/**
+		 * 输出计划顺序以及估算行数；调用过analyze后同时输出实际行数
+		 */
+		public String explain() {
+			StringBuilder sb = new StringBuilder();
+			explain(root, populationSize, 0, sb);
+			return sb.toString();
+		}
+
+		private void explain(Node node, double estimatedIn, int depth, StringBuilder sb) {
+			for (int i = 0; i < depth; i++) {
+				sb.append("  ");
+			}
+			sb.append(node.label())
+				.append(String.format(" (selectivity=%.2f, est in=%d out=%d",
+					node.selectivity, Math.round(estimatedIn), Math.round(estimatedIn * node.selectivity)));
+			if (analyzed) {
+				sb.append(", actual in=").append(node.actualIn).append(" out=").append(node.actualOut);
+			}
+			sb.append(")\n");
+
+			//假定各条件相互独立：AND的下一个操作数只看到前面都为真的行，OR只看到前面都为假的行
+			double childIn = estimatedIn;
+			for (Node child : node.children) {
+				explain(child, childIn, depth + 1, sb);
+				if (node.kind == Kind.AND) {
+					childIn *= child.selectivity;
+				} else if (node.kind == Kind.OR) {
+					childIn *= 1 - child.selectivity;
+				}
+			}
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package com.lun.designpattern.filter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 public class CriteriaSingle implements Criteria {
 
@@ -15,4 +17,25 @@ public class CriteriaSingle implements Criteria {
 		}
 		return singlePersons;
 	}
+
+	@Override
+	public BitSet meetCriteria(PersonTable table) {
+		return table.maritalStatusBitmap("SINGLE");
+	}
+
+	@Override
+	public boolean matches(Person person) {
+		return person.getMaritalStatus().equalsIgnoreCase("SINGLE");
+	}
+
+	@Override
+	public boolean matches(PersonRows rows, int row) {
+		return rows.maritalStatusCodeAt(row) == rows.maritalStatusCode("SINGLE");
+	}
+
+	@Override
+	public IntPredicate rowPredicate(PersonRows rows) {
+		int single = rows.maritalStatusCode("SINGLE");
+		return row -> rows.maritalStatusCodeAt(row) == single;
+	}
 }
@@ -0,0 +1,58 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+public class NotCriteria implements Criteria {
+
+   private Criteria criteria;
+
+   public NotCriteria(Criteria criteria) {
+      this.criteria = criteria;
+   }
+
+   @Override
+   public List<Person> meetCriteria(List<Person> persons) {
+      Set<Person> excluded = Collections.newSetFromMap(new IdentityHashMap<Person, Boolean>());
+      excluded.addAll(criteria.meetCriteria(persons));
+
+      List<Person> notCriteriaPersons = new ArrayList<Person>();
+      for (Person person : persons) {
+         if (!excluded.contains(person)) {
+            notCriteriaPersons.add(person);
+         }
+      }
+      return notCriteriaPersons;
+   }
+
+   @Override
+   public BitSet meetCriteria(PersonTable table) {
+      BitSet bitmap = criteria.meetCriteria(table);
+      bitmap.flip(0, table.size());
+      return bitmap;
+   }
+
+   @Override
+   public boolean matches(Person person) {
+      return !criteria.matches(person);
+   }
+
+   @Override
+   public boolean matches(PersonRows rows, int row) {
+      return !criteria.matches(rows, row);
+   }
+
+   @Override
+   public IntPredicate rowPredicate(PersonRows rows) {
+      return criteria.rowPredicate(rows).negate();
+   }
+
+   Criteria getCriteria() {
+      return criteria;
+   }
+}
@@ -1,6 +1,11 @@
 package com.lun.designpattern.filter;
 
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
 
 public class OrCriteria implements Criteria {
 
@@ -17,11 +22,46 @@ public class OrCriteria implements Criteria {
       List<Person> firstCriteriaItems = criteria.meetCriteria(persons);
       List<Person> otherCriteriaItems = otherCriteria.meetCriteria(persons);
 
+      //Person没有重写equals，用identity集合代替List.contains，避免O(n·m)
+      Set<Person> seen = Collections.newSetFromMap(new IdentityHashMap<Person, Boolean>());
+      seen.addAll(firstCriteriaItems);
       for (Person person : otherCriteriaItems) {
-         if(!firstCriteriaItems.contains(person)){
+         if(seen.add(person)){
             firstCriteriaItems.add(person);
          }
       }    
       return firstCriteriaItems;
    }
+
+   @Override
+   public BitSet meetCriteria(PersonTable table) {
+      BitSet bitmap = criteria.meetCriteria(table);
+      bitmap.or(otherCriteria.meetCriteria(table));
+      return bitmap;
+   }
+
+   @Override
+   public boolean matches(Person person) {
+      return criteria.matches(person) || otherCriteria.matches(person);
+   }
+
+   @Override
+   public boolean matches(PersonRows rows, int row) {
+      return criteria.matches(rows, row) || otherCriteria.matches(rows, row);
+   }
+
+   @Override
+   public IntPredicate rowPredicate(PersonRows rows) {
+      IntPredicate first = criteria.rowPredicate(rows);
+      IntPredicate other = otherCriteria.rowPredicate(rows);
+      return row -> first.test(row) || other.test(row);
+   }
+
+   Criteria getCriteria() {
+      return criteria;
+   }
+
+   Criteria getOtherCriteria() {
+      return otherCriteria;
+   }
 }
@@ -0,0 +1,110 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 基于ForkJoinPool的并行Criteria执行器
+ *
+ * 输入按chunkSize切块，每块在工作线程上对整棵标准树逐行调用matches，
+ * 结果写入各自块的列表，最后按块顺序拼接，所以输出顺序与输入一致。
+ * 元素数少于parallelThreshold时直接在调用线程上顺序执行。
+ *
+ * @author JK
+ *
+ */
+public class ParallelCriteriaExecutor {
+
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 14;
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 12;
+
+	private final ForkJoinPool pool;
+	private final int parallelThreshold;
+	private final int chunkSize;
+
+	public ParallelCriteriaExecutor() {
+		this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD, DEFAULT_CHUNK_SIZE);
+	}
+
+	public ParallelCriteriaExecutor(ForkJoinPool pool, int parallelThreshold, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		}
+		this.pool = pool;
+		this.parallelThreshold = parallelThreshold;
+		this.chunkSize = chunkSize;
+	}
+
+	public List<Person> meetCriteria(Criteria criteria, List<Person> persons) {
+		if (persons.size() < parallelThreshold || persons.size() <= chunkSize || pool.getParallelism() <= 1) {
+			return evaluate(criteria, persons);
+		}
+
+		//非随机访问的列表先拷贝一份，保证切块是O(1)
+		List<Person> source = persons instanceof RandomAccess ? persons : new ArrayList<Person>(persons);
+
+		int chunks = (source.size() + chunkSize - 1) / chunkSize;
+		//每块只set自己的下标，不改变列表结构，fork/join保证结果对调用线程可见
+		List<List<Person>> results = new ArrayList<List<Person>>(Collections.<List<Person>>nCopies(chunks, null));
+		pool.invoke(new ChunkTask(criteria, source, results, 0, chunks));
+
+		int total = 0;
+		for (List<Person> result : results) {
+			total += result.size();
+		}
+		List<Person> merged = new ArrayList<Person>(total);
+		for (List<Person> result : results) {
+			merged.addAll(result);
+		}
+		return merged;
+	}
+
+	private static List<Person> evaluate(Criteria criteria, List<Person> persons) {
+		List<Person> matched = new ArrayList<Person>();
+		for (Person person : persons) {
+			if (criteria.matches(person)) {
+				matched.add(person);
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * 按块下标区间二分，直到只剩一块时求值
+	 */
+	private final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Criteria criteria;
+		private final List<Person> persons;
+		private final List<List<Person>> results;
+		private final int fromChunk;
+		private final int toChunk;
+
+		ChunkTask(Criteria criteria, List<Person> persons, List<List<Person>> results, int fromChunk, int toChunk) {
+			this.criteria = criteria;
+			this.persons = persons;
+			this.results = results;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk == 1) {
+				int from = fromChunk * chunkSize;
+				int to = Math.min(from + chunkSize, persons.size());
+				results.set(fromChunk, evaluate(criteria, persons.subList(from, to)));
+				return;
+			}
+			int mid = (fromChunk + toChunk) >>> 1;
+			invokeAll(new ChunkTask(criteria, persons, results, fromChunk, mid),
+					new ChunkTask(criteria, persons, results, mid, toChunk));
+		}
+	}
+}
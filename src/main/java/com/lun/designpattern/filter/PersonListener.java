@@ -0,0 +1,16 @@
+package com.lun.designpattern.filter;
+
+/**
+ * PersonRepository的变更事件
+ *
+ * @author JK
+ *
+ */
+public interface PersonListener {
+
+	public void onAdd(Person person);
+
+	public void onRemove(Person person);
+
+	public void onUpdate(Person oldPerson, Person newPerson);
+}
@@ -0,0 +1,93 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 可变的Person集合，变更时通知已注册的监听者（包括常驻查询）
+ *
+ * @author JK
+ *
+ */
+public class PersonRepository {
+
+	private final Set<Person> persons = new LinkedHashSet<Person>();
+	private final List<PersonListener> listeners = new CopyOnWriteArrayList<PersonListener>();
+	private long version;
+
+	public synchronized boolean add(Person person) {
+		if (!persons.add(person)) {
+			return false;
+		}
+		version++;
+		for (PersonListener listener : listeners) {
+			listener.onAdd(person);
+		}
+		return true;
+	}
+
+	public synchronized boolean remove(Person person) {
+		if (!persons.remove(person)) {
+			return false;
+		}
+		version++;
+		for (PersonListener listener : listeners) {
+			listener.onRemove(person);
+		}
+		return true;
+	}
+
+	/**
+	 * Person是不可变的，更新即用newPerson替换oldPerson
+	 */
+	public synchronized boolean update(Person oldPerson, Person newPerson) {
+		if (!persons.remove(oldPerson)) {
+			return false;
+		}
+		persons.add(newPerson);
+		version++;
+		for (PersonListener listener : listeners) {
+			listener.onUpdate(oldPerson, newPerson);
+		}
+		return true;
+	}
+
+	public synchronized int size() {
+		return persons.size();
+	}
+
+	/**
+	 * 版本戳，每次成功的add/remove/update都会递增
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	public synchronized List<Person> getPersons() {
+		return new ArrayList<Person>(persons);
+	}
+
+	public synchronized void addListener(PersonListener listener) {
+		listeners.add(listener);
+	}
+
+	public synchronized void removeListener(PersonListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * 注册常驻查询，先对当前全集求值一次，之后只做增量维护
+	 */
+	public synchronized StandingQuery register(Criteria criteria) {
+		StandingQuery query = new StandingQuery(criteria, persons);
+		listeners.add(query);
+		return query;
+	}
+
+	public synchronized void unregister(StandingQuery query) {
+		listeners.remove(query);
+	}
+}
@@ -0,0 +1,30 @@
+package com.lun.designpattern.filter;
+
+/**
+ * 按行号访问、gender与maritalStatus经过字典编码的Person数据源
+ *
+ * Criteria可以直接比较编码求值，不必为每一行创建Person对象
+ *
+ * @author JK
+ *
+ */
+public interface PersonRows {
+
+	public int size();
+
+	/**
+	 * 物化第row行为Person对象
+	 */
+	public Person get(int row);
+
+	/**
+	 * 字典编码（忽略大小写），不存在时返回-1
+	 */
+	public int genderCode(String gender);
+
+	public int maritalStatusCode(String maritalStatus);
+
+	public int genderCodeAt(int row);
+
+	public int maritalStatusCodeAt(int row);
+}
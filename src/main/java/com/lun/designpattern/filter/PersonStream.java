@@ -0,0 +1,168 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * 惰性、流式的Criteria管道
+ *
+ * filter与limit按调用顺序生效：limit(10).filter(male)是前10行中的男性，filter(male).limit(10)是前10个男性。
+ * 相邻的多次filter会被融合成一个谓词，整条管道只遍历源一次，不产生中间列表；
+ * 任何一个limit达到数量后立即停止拉取，scanned()可以看到实际读了多少行。
+ *
+ * 与java.util.stream一样，一个PersonStream只能执行一次终端操作，之后不能再追加filter/limit。
+ *
+ * @author JK
+ *
+ */
+public class PersonStream {
+
+	private final Spliterator<Person> source;
+	//按调用顺序排列，每一段是一个（融合后的）filter加上它之后的limit
+	private final List<Stage> stages = new ArrayList<Stage>();
+	private long scanned;
+	private boolean consumed;
+
+	private PersonStream(Spliterator<Person> source) {
+		this.source = source;
+	}
+
+	public static PersonStream of(Spliterator<Person> source) {
+		return new PersonStream(source);
+	}
+
+	public static PersonStream of(Iterator<Person> source) {
+		return new PersonStream(Spliterators.spliteratorUnknownSize(source, Spliterator.ORDERED));
+	}
+
+	public static PersonStream of(Iterable<Person> source) {
+		return new PersonStream(source.spliterator());
+	}
+
+	public PersonStream filter(Criteria other) {
+		ensureNotConsumed();
+		Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+		if (last == null || last.limit != Long.MAX_VALUE) {
+			//之前已经有limit，新的filter只作用于通过该limit的行
+			stages.add(new Stage(other));
+		} else {
+			last.criteria = last.criteria == null ? other : new AndCriteria(last.criteria, other);
+		}
+		return this;
+	}
+
+	public PersonStream limit(long maxSize) {
+		ensureNotConsumed();
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("limit must not be negative: " + maxSize);
+		}
+		if (stages.isEmpty()) {
+			stages.add(new Stage(null));
+		}
+		Stage last = stages.get(stages.size() - 1);
+		last.limit = Math.min(last.limit, maxSize);
+		return this;
+	}
+
+	public Person findFirst() {
+		ensureNotConsumed();
+		limit(1);
+		Sink sink = new Sink(null);
+		run(sink);
+		return sink.first;
+	}
+
+	public List<Person> toList() {
+		List<Person> persons = new ArrayList<Person>();
+		run(new Sink(persons::add));
+		return persons;
+	}
+
+	public long count() {
+		Sink sink = new Sink(null);
+		run(sink);
+		return sink.emitted;
+	}
+
+	public void forEach(Consumer<? super Person> action) {
+		run(new Sink(action));
+	}
+
+	/**
+	 * 终端操作执行过程中从源读取的行数
+	 */
+	public long scanned() {
+		return scanned;
+	}
+
+	private void ensureNotConsumed() {
+		if (consumed) {
+			throw new IllegalStateException("stream has already been consumed");
+		}
+	}
+
+	private void run(Sink sink) {
+		ensureNotConsumed();
+		consumed = true;
+
+		for (Stage stage : stages) {
+			if (stage.limit == 0) {
+				return;
+			}
+		}
+		while (!sink.exhausted && source.tryAdvance(sink)) {
+			scanned++;
+		}
+	}
+
+	private static final class Stage {
+		private Criteria criteria;
+		private long limit = Long.MAX_VALUE;
+		//终端操作中通过本段filter的行数
+		private long passed;
+
+		Stage(Criteria criteria) {
+			this.criteria = criteria;
+		}
+	}
+
+	/**
+	 * 每个终端操作只分配一个Sink，逐行复用
+	 */
+	private final class Sink implements Consumer<Person> {
+
+		private final Consumer<? super Person> downstream;
+		private final Stage[] stages = PersonStream.this.stages.toArray(new Stage[0]);
+		private Person first;
+		private long emitted;
+		//某个limit已经达到数量，之后不会再有行能通过
+		private boolean exhausted;
+
+		Sink(Consumer<? super Person> downstream) {
+			this.downstream = downstream;
+		}
+
+		@Override
+		public void accept(Person person) {
+			for (Stage stage : stages) {
+				if (stage.criteria != null && !stage.criteria.matches(person)) {
+					return;
+				}
+				if (++stage.passed == stage.limit) {
+					exhausted = true;
+				}
+			}
+			if (first == null) {
+				first = person;
+			}
+			emitted++;
+			if (downstream != null) {
+				downstream.accept(person);
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 带位图索引的Person表
+ *
+ * gender与maritalStatus做字典编码（忽略大小写），每个取值对应一个BitSet，
+ * 第i位表示第i行是否为该取值。组合标准时直接对位图做按字（long）与/或，
+ * 最后才把结果位图还原成Person列表。
+ *
+ * @author JK
+ *
+ */
+public class PersonTable implements PersonRows {
+
+	private final List<Person> rows;
+
+	private final Map<String, Integer> genderDict = new HashMap<>();
+	private final List<BitSet> genderBitmaps = new ArrayList<>();
+	private final int[] genderCodes;
+
+	private final Map<String, Integer> maritalStatusDict = new HashMap<>();
+	private final List<BitSet> maritalStatusBitmaps = new ArrayList<>();
+	private final int[] maritalStatusCodes;
+
+	public PersonTable(List<Person> persons) {
+		this.rows = new ArrayList<>(persons);
+		this.genderCodes = new int[rows.size()];
+		this.maritalStatusCodes = new int[rows.size()];
+
+		for (int i = 0; i < rows.size(); i++) {
+			Person person = rows.get(i);
+			genderCodes[i] = encode(person.getGender(), genderDict, genderBitmaps, i);
+			maritalStatusCodes[i] = encode(person.getMaritalStatus(), maritalStatusDict, maritalStatusBitmaps, i);
+		}
+	}
+
+	private static int encode(String value, Map<String, Integer> dict, List<BitSet> bitmaps, int row) {
+		String key = normalize(value);
+		Integer code = dict.get(key);
+		if (code == null) {
+			code = bitmaps.size();
+			dict.put(key, code);
+			bitmaps.add(new BitSet());
+		}
+		bitmaps.get(code).set(row);
+		return code;
+	}
+
+	static String normalize(String value) {
+		return value == null ? "" : value.toUpperCase(Locale.ROOT);
+	}
+
+	@Override
+	public int size() {
+		return rows.size();
+	}
+
+	@Override
+	public Person get(int row) {
+		return rows.get(row);
+	}
+
+	@Override
+	public int genderCode(String gender) {
+		Integer code = genderDict.get(normalize(gender));
+		return code == null ? -1 : code;
+	}
+
+	@Override
+	public int maritalStatusCode(String maritalStatus) {
+		Integer code = maritalStatusDict.get(normalize(maritalStatus));
+		return code == null ? -1 : code;
+	}
+
+	@Override
+	public int genderCodeAt(int row) {
+		return genderCodes[row];
+	}
+
+	@Override
+	public int maritalStatusCodeAt(int row) {
+		return maritalStatusCodes[row];
+	}
+
+	/**
+	 * 返回的是副本，调用方可以随意做and/or/flip
+	 */
+	public BitSet genderBitmap(String gender) {
+		int code = genderCode(gender);
+		return code < 0 ? new BitSet(size()) : (BitSet) genderBitmaps.get(code).clone();
+	}
+
+	public BitSet maritalStatusBitmap(String maritalStatus) {
+		int code = maritalStatusCode(maritalStatus);
+		return code < 0 ? new BitSet(size()) : (BitSet) maritalStatusBitmaps.get(code).clone();
+	}
+
+	public BitSet allRows() {
+		BitSet all = new BitSet(size());
+		all.set(0, size());
+		return all;
+	}
+
+	/**
+	 * 位图还原为Person列表，保持原有顺序
+	 */
+	public List<Person> toPersons(BitSet bitmap) {
+		List<Person> persons = new ArrayList<>(bitmap.cardinality());
+		for (int i = bitmap.nextSetBit(0); i >= 0 && i < size(); i = bitmap.nextSetBit(i + 1)) {
+			persons.add(rows.get(i));
+		}
+		return persons;
+	}
+
+	public List<Person> select(Criteria criteria) {
+		return toPersons(criteria.meetCriteria(this));
+	}
+}
@@ -0,0 +1,65 @@
+package com.lun.designpattern.filter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 常驻查询：注册到PersonRepository后，随每次变更增量维护结果集
+ *
+ * 每个事件只对变更的那一行求值一次，读取结果不会重新扫描全集。
+ * Person未重写equals，结果集按对象identity去重。
+ *
+ * @author JK
+ *
+ */
+public class StandingQuery implements PersonListener {
+
+	private final Criteria criteria;
+	private final Set<Person> result = new LinkedHashSet<Person>();
+
+	StandingQuery(Criteria criteria, Iterable<Person> initial) {
+		this.criteria = criteria;
+		for (Person person : initial) {
+			onAdd(person);
+		}
+	}
+
+	public Criteria getCriteria() {
+		return criteria;
+	}
+
+	@Override
+	public synchronized void onAdd(Person person) {
+		if (criteria.matches(person)) {
+			result.add(person);
+		}
+	}
+
+	@Override
+	public synchronized void onRemove(Person person) {
+		result.remove(person);
+	}
+
+	@Override
+	public synchronized void onUpdate(Person oldPerson, Person newPerson) {
+		result.remove(oldPerson);
+		onAdd(newPerson);
+	}
+
+	public synchronized int size() {
+		return result.size();
+	}
+
+	public synchronized boolean contains(Person person) {
+		return result.contains(person);
+	}
+
+	/**
+	 * 当前结果的快照，按进入结果集的先后排序
+	 */
+	public synchronized List<Person> getResult() {
+		return new ArrayList<Person>(result);
+	}
+}
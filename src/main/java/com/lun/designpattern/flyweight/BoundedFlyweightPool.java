@@ -0,0 +1,283 @@
+package com.lun.designpattern.flyweight;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 有容量上限的享元池
+ *
+ * 热区最多保存maxSize个享元，超出时按LRU或LFU淘汰。可选的冷区用软引用/弱引用保存被淘汰的享元：
+ * 只要对象还没被GC回收，再次访问时会被提升回热区，保持同一个实例，不必重新创建。
+ *
+ * 读路径与FlyweightPool一样只有一次ConcurrentHashMap.get；访问时间与访问次数是近似值，
+ * 只用于挑选淘汰对象。淘汰在创建路径上进行，每次淘汰扫描一遍热区，适用于上限在数千以内的池。
+ *
+ * @author JK
+ *
+ */
+public class BoundedFlyweightPool<K, V> implements FlyweightCache<K, V> {
+
+	public enum EvictionPolicy {
+		/** 最近最少使用 */
+		LRU,
+		/** 最不经常使用 */
+		LFU
+	}
+
+	public enum ColdTier {
+		/** 淘汰即丢弃 */
+		NONE,
+		/** 内存紧张时才回收 */
+		SOFT,
+		/** 没有强引用时即可回收 */
+		WEAK
+	}
+
+	private final Function<? super K, ? extends V> factory;
+	private final int maxSize;
+	private final EvictionPolicy policy;
+	private final ColdTier coldTier;
+
+	private final ConcurrentHashMap<K, Entry<V>> hot = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<K, ColdReference<K, V>> cold = new ConcurrentHashMap<>();
+	private final ReferenceQueue<V> collected = new ReferenceQueue<>();
+	private final Object evictionLock = new Object();
+
+	//只在创建路径上递增，命中时只读取，避免热点上的写竞争
+	private final AtomicLong clock = new AtomicLong();
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder promotions = new LongAdder();
+
+	public BoundedFlyweightPool(Function<? super K, ? extends V> factory, int maxSize, EvictionPolicy policy,
+			ColdTier coldTier) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.policy = policy;
+		this.coldTier = coldTier;
+	}
+
+	@Override
+	public V get(K key) {
+		Entry<V> entry = hot.get(key);
+		if (entry != null) {
+			entry.touch(clock.get());
+			entry.hits.increment();
+			hits.increment();
+			return entry.value;
+		}
+
+		misses.increment();
+		entry = hot.computeIfAbsent(key, this::load);
+		entry.misses.increment();
+		if (hot.size() > maxSize) {
+			evict(key);
+		}
+		return entry.value;
+	}
+
+	private Entry<V> load(K key) {
+		long now = clock.incrementAndGet();
+		ColdReference<K, V> ref = cold.remove(key);
+		V value = ref == null ? null : ref.get();
+		Entry<V> entry;
+		if (value != null) {
+			promotions.increment();
+			entry = new Entry<>(value, now, 0);
+		} else {
+			created.increment();
+			entry = new Entry<>(factory.apply(key), now, 1);
+		}
+		return entry;
+	}
+
+	/**
+	 * 淘汰直到不超过上限，刚放入的key不参与挑选
+	 */
+	private void evict(K justLoaded) {
+		synchronized (evictionLock) {
+			purgeCollected();
+			while (hot.size() > maxSize) {
+				K victimKey = null;
+				Entry<V> victim = null;
+				long victimScore = Long.MAX_VALUE;
+				for (Map.Entry<K, Entry<V>> e : hot.entrySet()) {
+					if (e.getKey().equals(justLoaded)) {
+						continue;
+					}
+					long score = policy == EvictionPolicy.LRU ? e.getValue().lastAccess : e.getValue().frequency;
+					if (score < victimScore) {
+						victimKey = e.getKey();
+						victim = e.getValue();
+						victimScore = score;
+					}
+				}
+				if (victimKey == null) {
+					return;
+				}
+				if (hot.remove(victimKey, victim)) {
+					evictions.increment();
+					demote(victimKey, victim.value);
+				}
+			}
+			if (policy == EvictionPolicy.LFU) {
+				age();
+			}
+		}
+	}
+
+	/**
+	 * LFU老化：大约每创建maxSize次把频率减半，避免早期的热点永远赖在池中
+	 */
+	private void age() {
+		if (clock.get() % maxSize != 0) {
+			return;
+		}
+		for (Entry<V> entry : hot.values()) {
+			entry.frequency >>= 1;
+		}
+	}
+
+	private void demote(K key, V value) {
+		if (coldTier == ColdTier.SOFT) {
+			cold.put(key, new SoftColdReference<>(key, value, collected));
+		} else if (coldTier == ColdTier.WEAK) {
+			cold.put(key, new WeakColdReference<>(key, value, collected));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void purgeCollected() {
+		Reference<? extends V> ref;
+		while ((ref = collected.poll()) != null) {
+			ColdReference<K, V> coldRef = (ColdReference<K, V>) ref;
+			cold.remove(coldRef.key(), coldRef);
+		}
+	}
+
+	@Override
+	public int size() {
+		return hot.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * 冷区中尚未被GC回收的引用数（近似值）
+	 */
+	public int getColdSize() {
+		synchronized (evictionLock) {
+			purgeCollected();
+		}
+		return cold.size();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * 从冷区提升回热区的次数
+	 */
+	public long getPromotions() {
+		return promotions.sum();
+	}
+
+	public double getOccupancy() {
+		return (double) hot.size() / maxSize;
+	}
+
+	/**
+	 * 只统计当前仍在热区中的key，被淘汰的key不保留计数，避免计数本身无限增长
+	 */
+	@Override
+	public FlyweightStats getStats(K key) {
+		Entry<V> entry = hot.get(key);
+		return entry == null ? new FlyweightStats(0, 0, 0)
+				: new FlyweightStats(entry.created, entry.hits.sum(), entry.misses.sum());
+	}
+
+	@Override
+	public FlyweightStats getTotalStats() {
+		return new FlyweightStats(created.sum(), hits.sum(), misses.sum());
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedFlyweightPool [policy=" + policy + ", coldTier=" + coldTier + ", size=" + size() + "/" + maxSize
+				+ ", cold=" + getColdSize() + ", evictions=" + getEvictions() + ", promotions=" + getPromotions()
+				+ ", total=" + getTotalStats() + "]";
+	}
+
+	private static final class Entry<V> {
+		private final V value;
+		private final int created;
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private volatile long lastAccess;
+		private volatile long frequency = 1;
+
+		Entry(V value, long now, int created) {
+			this.value = value;
+			this.lastAccess = now;
+			this.created = created;
+		}
+
+		void touch(long now) {
+			if (lastAccess != now) {
+				lastAccess = now;
+			}
+			//非原子自增，丢失少量计数不影响淘汰的挑选
+			frequency++;
+		}
+	}
+
+	private interface ColdReference<K, V> {
+		K key();
+
+		V get();
+	}
+
+	private static final class SoftColdReference<K, V> extends SoftReference<V> implements ColdReference<K, V> {
+		private final K key;
+
+		SoftColdReference(K key, V value, ReferenceQueue<V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		@Override
+		public K key() {
+			return key;
+		}
+	}
+
+	private static final class WeakColdReference<K, V> extends WeakReference<V> implements ColdReference<K, V> {
+		private final K key;
+
+		WeakColdReference(K key, V value, ReferenceQueue<V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		@Override
+		public K key() {
+			return key;
+		}
+	}
+}
@@ -23,8 +23,17 @@ public class Circle implements com.lun.designpattern.factory.example1.Shape{
 	      this.radius = radius;
 	   }
 
+	   public String getColor() {
+	      return color;
+	   }
+
 	   @Override
 	   public void draw() {
+	      draw(x, y, radius);
+	   }
+
+	   //外部状态由调用方传入，不修改共享的享元，可以被多个线程同时调用
+	   public void draw(int x, int y, int radius) {
 	      System.out.println("Circle: Draw() [Color : " + color 
 	         +", x : " + x +", y :" + y +", radius :" + radius);
 	   }
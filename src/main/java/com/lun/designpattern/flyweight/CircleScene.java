@@ -0,0 +1,133 @@
+package com.lun.designpattern.flyweight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 以列存（struct-of-arrays）方式保存外部状态的场景
+ *
+ * 内部状态（颜色）仍然由ShapeFactory共享，场景只为每种颜色分配一个享元编号；
+ * 每个圆的外部状态x、y、radius以及享元编号分别存放在int[]列中，
+ * drawAll按下标顺序连续遍历各列，把外部状态作为参数传给享元，不修改任何共享对象，
+ * 因此可以把下标区间切分给多个线程并行绘制。
+ *
+ * 添加圆与绘制不能同时进行。
+ *
+ * @author JK
+ *
+ */
+public class CircleScene {
+
+	/**
+	 * 绘制回调，并行绘制时需要是线程安全的
+	 */
+	public interface Renderer {
+		void draw(Circle flyweight, int x, int y, int radius);
+	}
+
+	private static final int PARALLEL_CHUNK_SIZE = 1 << 14;
+
+	private final Map<String, Integer> flyweightIds = new HashMap<>();
+	private final List<Circle> flyweights = new ArrayList<>();
+
+	private int[] ids;
+	private int[] xs;
+	private int[] ys;
+	private int[] radii;
+	private int size;
+
+	public CircleScene() {
+		this(16);
+	}
+
+	public CircleScene(int initialCapacity) {
+		int capacity = Math.max(1, initialCapacity);
+		ids = new int[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		radii = new int[capacity];
+	}
+
+	/**
+	 * 添加一个圆，返回它在场景中的下标
+	 */
+	public int add(String color, int x, int y, int radius) {
+		if (size == ids.length) {
+			int capacity = size * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			radii = Arrays.copyOf(radii, capacity);
+		}
+		ids[size] = flyweightId(color);
+		xs[size] = x;
+		ys[size] = y;
+		radii[size] = radius;
+		return size++;
+	}
+
+	private int flyweightId(String color) {
+		Integer id = flyweightIds.get(color);
+		if (id == null) {
+			id = flyweights.size();
+			flyweights.add((Circle) ShapeFactory.getCircle(color));
+			flyweightIds.put(color, id);
+		}
+		return id;
+	}
+
+	public void setPosition(int index, int x, int y) {
+		checkIndex(index);
+		xs[index] = x;
+		ys[index] = y;
+	}
+
+	public void setRadius(int index, int radius) {
+		checkIndex(index);
+		radii[index] = radius;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getFlyweightCount() {
+		return flyweights.size();
+	}
+
+	public void drawAll() {
+		drawAll(Circle::draw);
+	}
+
+	public void drawAll(Renderer renderer) {
+		draw(renderer, 0, size);
+	}
+
+	/**
+	 * 按连续的下标区间切块并行绘制，绘制顺序不保证
+	 */
+	public void drawAllParallel(Renderer renderer) {
+		int chunks = (size + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int from = chunk * PARALLEL_CHUNK_SIZE;
+			draw(renderer, from, Math.min(from + PARALLEL_CHUNK_SIZE, size));
+		});
+	}
+
+	private void draw(Renderer renderer, int from, int to) {
+		Circle[] shared = flyweights.toArray(new Circle[0]);
+		for (int i = from; i < to; i++) {
+			renderer.draw(shared[ids[i]], xs[i], ys[i], radii[i]);
+		}
+	}
+}
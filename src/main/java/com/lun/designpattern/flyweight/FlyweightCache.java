@@ -0,0 +1,21 @@
+package com.lun.designpattern.flyweight;
+
+/**
+ * 享元缓存：按key获取共享对象，并提供计数
+ *
+ * @author JK
+ *
+ */
+public interface FlyweightCache<K, V> {
+
+	public V get(K key);
+
+	public int size();
+
+	public FlyweightStats getStats(K key);
+
+	/**
+	 * 整个池的汇总计数
+	 */
+	public FlyweightStats getTotalStats();
+}
@@ -1,9 +1,13 @@
 package com.lun.designpattern.flyweight;
 
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lun.designpattern.factory.example1.Shape;
+
 public class FlyweightPatternDemo {
 	private static final String colors[] = { "Red", "Green", "Blue", "White", "Black" };
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException {
 
 		for (int i = 0; i < 20; ++i) {
 			Circle circle = (Circle) ShapeFactory.getCircle(getRandomColor());
@@ -12,6 +16,43 @@ public class FlyweightPatternDemo {
 			circle.setRadius(100);
 			circle.draw();
 		}
+
+		//多线程并发获取，每种颜色仍然只创建一个享元
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 100000; ++i) {
+					ShapeFactory.getCircle(getRandomColor());
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (String color : colors) {
+			System.out.println(color + " created : " + ShapeFactory.getCirclePool().getStats(color).getCreated());
+		}
+
+		//外部状态列存在场景中，绘制时作为参数传给享元
+		CircleScene scene = new CircleScene();
+		for (int i = 0; i < 1000000; ++i) {
+			scene.add(getRandomColor(), getRandomX(), getRandomY(), 100);
+		}
+		LongAdder drawn = new LongAdder();
+		scene.drawAllParallel((flyweight, x, y, radius) -> drawn.increment());
+		System.out.println("Scene flyweights : " + scene.getFlyweightCount() + ", circles drawn : " + drawn.sum());
+
+		//有上限的享元池：只保留3种颜色，被淘汰的red仍被强引用着，会从弱引用冷区提升回来而不是重新创建
+		BoundedFlyweightPool<String, Shape> bounded = ShapeFactory.useBoundedCirclePool(3,
+				BoundedFlyweightPool.EvictionPolicy.LRU, BoundedFlyweightPool.ColdTier.WEAK);
+		Circle red = (Circle) ShapeFactory.getCircle("Red");
+		for (String color : colors) {
+			ShapeFactory.getCircle(color);
+		}
+		System.out.println("Red is the same flyweight : " + (red == ShapeFactory.getCircle("Red")));
+		System.out.println("Size : " + bounded.size() + "/" + bounded.getMaxSize() + ", evictions : "
+				+ bounded.getEvictions() + ", promotions : " + bounded.getPromotions());
 	}
 
 	private static String getRandomColor() {
@@ -53,4 +94,17 @@ Circle: Draw() [Color : Red, x : 9, y :75, radius :100
 Circle: Draw() [Color : Green, x : 81, y :74, radius :100
 Circle: Draw() [Color : White, x : 35, y :0, radius :100
 Circle: Draw() [Color : Blue, x : 59, y :70, radius :100
+Red created : 1
+Green created : 1
+Blue created : 1
+White created : 1
+Black created : 1
+Scene flyweights : 5, circles drawn : 1000000
+Creating circle of color : Red
+Creating circle of color : Green
+Creating circle of color : Blue
+Creating circle of color : White
+Creating circle of color : Black
+Red is the same flyweight : true
+Size : 3/3, evictions : 3, promotions : 1
  */
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.lun.designpattern.flyweight;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 线程安全、带计数的享元池
+ *
+ * 读路径只有一次ConcurrentHashMap.get，不加锁；未命中时通过computeIfAbsent保证
+ * 每个key的享元只创建一次。计数使用LongAdder，高并发下不会互相争用。
+ *
+ * @author JK
+ *
+ */
+public class FlyweightPool<K, V> implements FlyweightCache<K, V> {
+
+	private final Function<? super K, ? extends V> factory;
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<K, Counters> counters = new ConcurrentHashMap<>();
+
+	public FlyweightPool(Function<? super K, ? extends V> factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null) {
+			entry.counters.hits.increment();
+			return entry.value;
+		}
+
+		Counters keyCounters = counters(key);
+		keyCounters.misses.increment();
+		return entries.computeIfAbsent(key, k -> {
+			V value = factory.apply(k);
+			keyCounters.created.increment();
+			return new Entry<>(value, keyCounters);
+		}).value;
+	}
+
+	private Counters counters(K key) {
+		Counters keyCounters = counters.get(key);
+		return keyCounters != null ? keyCounters : counters.computeIfAbsent(key, k -> new Counters());
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public FlyweightStats getStats(K key) {
+		Counters keyCounters = counters.get(key);
+		return keyCounters == null ? new FlyweightStats(0, 0, 0) : keyCounters.snapshot();
+	}
+
+	/**
+	 * 所有key的计数快照
+	 */
+	public Map<K, FlyweightStats> getAllStats() {
+		Map<K, FlyweightStats> stats = new LinkedHashMap<>();
+		for (Map.Entry<K, Counters> e : counters.entrySet()) {
+			stats.put(e.getKey(), e.getValue().snapshot());
+		}
+		return stats;
+	}
+
+	@Override
+	public FlyweightStats getTotalStats() {
+		long created = 0, hits = 0, misses = 0;
+		for (Counters keyCounters : counters.values()) {
+			created += keyCounters.created.sum();
+			hits += keyCounters.hits.sum();
+			misses += keyCounters.misses.sum();
+		}
+		return new FlyweightStats(created, hits, misses);
+	}
+
+	private static final class Entry<V> {
+		private final V value;
+		private final Counters counters;
+
+		Entry(V value, Counters counters) {
+			this.value = value;
+			this.counters = counters;
+		}
+	}
+
+	private static final class Counters {
+		private final LongAdder created = new LongAdder();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+
+		FlyweightStats snapshot() {
+			return new FlyweightStats(created.sum(), hits.sum(), misses.sum());
+		}
+	}
+}
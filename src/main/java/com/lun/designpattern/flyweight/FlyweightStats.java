@@ -0,0 +1,48 @@
+package com.lun.designpattern.flyweight;
+
+/**
+ * 某个key（或整个池）的计数快照
+ *
+ * @author JK
+ *
+ */
+public class FlyweightStats {
+
+	private final long created;
+	private final long hits;
+	private final long misses;
+
+	public FlyweightStats(long created, long hits, long misses) {
+		this.created = created;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	/**
+	 * 实际创建的享元个数，同一个key正常情况下应为1
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * 快速路径未命中、进入创建路径的次数，并发首次访问时可能大于created
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	public double getHitRatio() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return "[created=" + created + ", hits=" + hits + ", misses=" + misses + "]";
+	}
+}
@@ -1,25 +1,39 @@
 package com.lun.designpattern.flyweight;
 
-import java.util.HashMap;
+import java.util.function.Function;
 
 import com.lun.designpattern.factory.example1.Shape;
 
 /**
  * 就是用HashMap作为缓存
+ * 
+ * 多线程下HashMap先get再put会重复创建享元，甚至破坏map，
+ * 现改用FlyweightPool（ConcurrentHashMap），每种颜色的Circle只创建一次。
+ * 颜色来自用户输入时可以换成有上限的BoundedFlyweightPool，防止缓存无限增长
  * @author JK
  *
  */
 public class ShapeFactory {
-	   private static final HashMap<String, Shape> circleMap = new HashMap<>();
+	   private static final Function<String, Shape> circleCreator = color -> {
+	      System.out.println("Creating circle of color : " + color);
+	      return new Circle(color);
+	   };
+
+	   private static volatile FlyweightCache<String, Shape> circlePool = new FlyweightPool<>(circleCreator);
 
 	   public static Shape getCircle(String color) {
-	      Circle circle = (Circle)circleMap.get(color);
+	      return circlePool.get(color);
+	   }
+
+	   public static FlyweightCache<String, Shape> getCirclePool() {
+	      return circlePool;
+	   }
 
-	      if(circle == null) {
-	         circle = new Circle(color);
-	         circleMap.put(color, circle);
-	         System.out.println("Creating circle of color : " + color);
-	      }
-	      return circle;
+	   //切换为有上限的享元池，之前缓存的Circle不会迁移
+	   public static BoundedFlyweightPool<String, Shape> useBoundedCirclePool(int maxSize,
+	         BoundedFlyweightPool.EvictionPolicy policy, BoundedFlyweightPool.ColdTier coldTier) {
+	      BoundedFlyweightPool<String, Shape> pool = new BoundedFlyweightPool<>(circleCreator, maxSize, policy, coldTier);
+	      circlePool = pool;
+	      return pool;
 	   }
 }
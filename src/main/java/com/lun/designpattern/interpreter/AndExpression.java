@@ -14,4 +14,17 @@ public class AndExpression implements Expression {
 	   public boolean interpret(String context) {        
 	      return expr1.interpret(context) && expr2.interpret(context);
 	   }
+
+	   @Override
+	   public boolean interpret(TerminalMatches matches) {        
+	      return expr1.interpret(matches) && expr2.interpret(matches);
+	   }
+
+	   Expression getExpr1() {
+	      return expr1;
+	   }
+
+	   Expression getExpr2() {
+	      return expr2;
+	   }
 }
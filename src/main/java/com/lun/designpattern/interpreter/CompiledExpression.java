@@ -0,0 +1,192 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 由ExpressionCompiler生成的扁平规则
+ *
+ * 布尔结构被编译成一段指令，interpret时在一个循环里执行，没有递归和虚调用；
+ * 每个不同的终结符在一次interpret中最多对context扫描一次。
+ * 终结符不超过64个时用两个long记录结果，不产生任何分配。
+ *
+ * @author JK
+ *
+ */
+public class CompiledExpression implements Expression {
+
+	static final int TERM = 0;
+	static final int CALL = 1;
+	static final int JF = 2;
+	static final int JT = 3;
+	static final int NOT = 4;
+
+	private static final int OPCODE_BITS = 3;
+	private static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+	private final int[] code;
+	private final String[] terminals;
+	private final Expression[] opaques;
+	private volatile Binding binding;
+
+	CompiledExpression(int[] code, String[] terminals, Expression[] opaques) {
+		this.code = code;
+		this.terminals = terminals;
+		this.opaques = opaques;
+	}
+
+	static int instruction(int opcode, int operand) {
+		return operand << OPCODE_BITS | opcode;
+	}
+
+	@Override
+	public boolean interpret(String context) {
+		if (terminals.length > 64) {
+			return interpretLarge(context);
+		}
+
+		long known = 0;
+		long found = 0;
+		boolean acc = false;
+		int pc = 0;
+		while (pc < code.length) {
+			int instruction = code[pc];
+			int operand = instruction >>> OPCODE_BITS;
+			switch (instruction & OPCODE_MASK) {
+			case TERM:
+				long bit = 1L << operand;
+				if ((known & bit) == 0) {
+					known |= bit;
+					if (context.contains(terminals[operand])) {
+						found |= bit;
+					}
+				}
+				acc = (found & bit) != 0;
+				pc++;
+				break;
+			case CALL:
+				acc = opaques[operand].interpret(context);
+				pc++;
+				break;
+			case NOT:
+				acc = !acc;
+				pc++;
+				break;
+			case JF:
+				pc = acc ? pc + 1 : operand;
+				break;
+			default:
+				pc = acc ? operand : pc + 1;
+			}
+		}
+		return acc;
+	}
+
+	/**
+	 * 终结符超过64个时，用一个字节数组记录 0=未知 1=不包含 2=包含
+	 */
+	private boolean interpretLarge(String context) {
+		byte[] memo = new byte[terminals.length];
+		boolean acc = false;
+		int pc = 0;
+		while (pc < code.length) {
+			int instruction = code[pc];
+			int operand = instruction >>> OPCODE_BITS;
+			switch (instruction & OPCODE_MASK) {
+			case TERM:
+				if (memo[operand] == 0) {
+					memo[operand] = (byte) (context.contains(terminals[operand]) ? 2 : 1);
+				}
+				acc = memo[operand] == 2;
+				pc++;
+				break;
+			case CALL:
+				acc = opaques[operand].interpret(context);
+				pc++;
+				break;
+			case NOT:
+				acc = !acc;
+				pc++;
+				break;
+			case JF:
+				pc = acc ? pc + 1 : operand;
+				break;
+			default:
+				pc = acc ? operand : pc + 1;
+			}
+		}
+		return acc;
+	}
+
+	/**
+	 * 基于TerminalIndex的扫描结果求值，终结符编号按索引解析一次后缓存
+	 */
+	@Override
+	public boolean interpret(TerminalMatches matches) {
+		int[] ids = bind(matches.getIndex());
+		BitSet matched = matches.getMatched();
+		boolean acc = false;
+		int pc = 0;
+		while (pc < code.length) {
+			int instruction = code[pc];
+			int operand = instruction >>> OPCODE_BITS;
+			switch (instruction & OPCODE_MASK) {
+			case TERM:
+				int id = ids[operand];
+				acc = id < 0 ? matches.getContext().contains(terminals[operand]) : matched.get(id);
+				pc++;
+				break;
+			case CALL:
+				acc = opaques[operand].interpret(matches);
+				pc++;
+				break;
+			case NOT:
+				acc = !acc;
+				pc++;
+				break;
+			case JF:
+				pc = acc ? pc + 1 : operand;
+				break;
+			default:
+				pc = acc ? operand : pc + 1;
+			}
+		}
+		return acc;
+	}
+
+	private int[] bind(TerminalIndex index) {
+		Binding current = binding;
+		if (current == null || current.index != index) {
+			int[] ids = new int[terminals.length];
+			for (int i = 0; i < terminals.length; i++) {
+				ids[i] = index.indexOf(terminals[i]);
+			}
+			current = new Binding(index, ids);
+			binding = current;
+		}
+		return current.ids;
+	}
+
+	private static final class Binding {
+		private final TerminalIndex index;
+		private final int[] ids;
+
+		Binding(TerminalIndex index, int[] ids) {
+			this.index = index;
+			this.ids = ids;
+		}
+	}
+
+	void collectTerminals(List<String> collected) {
+		collected.addAll(Arrays.asList(terminals));
+	}
+
+	public int getTerminalCount() {
+		return terminals.length;
+	}
+
+	public int getInstructionCount() {
+		return code.length;
+	}
+}
@@ -2,4 +2,11 @@ package com.lun.designpattern.interpreter;
 
 public interface Expression {
 	public boolean interpret(String context);
+
+	/**
+	 * 基于TerminalIndex的扫描结果求值，默认退化为对原始context求值
+	 */
+	public default boolean interpret(TerminalMatches matches) {
+		return interpret(matches.getContext());
+	}
 }
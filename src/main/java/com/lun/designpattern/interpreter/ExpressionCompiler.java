@@ -0,0 +1,94 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把Expression树编译成扁平的CompiledExpression
+ *
+ * 编译规则（单累加器，带短路跳转）：
+ * <pre>
+ * Terminal(s)  : TERM i            acc = context包含第i个终结符
+ * And(a, b)    : a; JF end; b; end: 
+ * Or(a, b)     : a; JT end; b; end:
+ * Not(a)       : a; NOT
+ * </pre>
+ * 相同data的终结符只登记一次；无法识别的Expression实现作为黑盒CALL调用。
+ *
+ * @author JK
+ *
+ */
+public class ExpressionCompiler {
+
+	private final List<String> terminals = new ArrayList<String>();
+	private final Map<String, Integer> terminalIndex = new HashMap<String, Integer>();
+	private final List<Expression> opaques = new ArrayList<Expression>();
+	private final Map<Expression, Integer> opaqueIndex = new IdentityHashMap<Expression, Integer>();
+	private int[] code = new int[16];
+	private int length;
+
+	private ExpressionCompiler() {
+	}
+
+	public static CompiledExpression compile(Expression expression) {
+		ExpressionCompiler compiler = new ExpressionCompiler();
+		compiler.emit(expression);
+		int[] code = new int[compiler.length];
+		System.arraycopy(compiler.code, 0, code, 0, compiler.length);
+		return new CompiledExpression(code, compiler.terminals.toArray(new String[0]),
+				compiler.opaques.toArray(new Expression[0]));
+	}
+
+	private void emit(Expression expression) {
+		if (expression instanceof CompiledExpression) {
+			throw new IllegalArgumentException("expression is already compiled");
+		}
+		if (expression instanceof AndExpression) {
+			AndExpression and = (AndExpression) expression;
+			emitShortCircuit(and.getExpr1(), CompiledExpression.JF, and.getExpr2());
+		} else if (expression instanceof OrExpression) {
+			OrExpression or = (OrExpression) expression;
+			emitShortCircuit(or.getExpr1(), CompiledExpression.JT, or.getExpr2());
+		} else if (expression instanceof NotExpression) {
+			emit(((NotExpression) expression).getExpr());
+			append(CompiledExpression.NOT, 0);
+		} else if (expression instanceof TerminalExpression) {
+			String data = ((TerminalExpression) expression).getData();
+			Integer index = terminalIndex.get(data);
+			if (index == null) {
+				index = terminals.size();
+				terminals.add(data);
+				terminalIndex.put(data, index);
+			}
+			append(CompiledExpression.TERM, index);
+		} else {
+			Integer index = opaqueIndex.get(expression);
+			if (index == null) {
+				index = opaques.size();
+				opaques.add(expression);
+				opaqueIndex.put(expression, index);
+			}
+			append(CompiledExpression.CALL, index);
+		}
+	}
+
+	private void emitShortCircuit(Expression left, int jump, Expression right) {
+		emit(left);
+		int jumpAt = length;
+		append(jump, 0);
+		emit(right);
+		code[jumpAt] = CompiledExpression.instruction(jump, length);
+	}
+
+	private void append(int opcode, int operand) {
+		if (length == code.length) {
+			int[] grown = new int[length * 2];
+			System.arraycopy(code, 0, grown, 0, length);
+			code = grown;
+		}
+		code[length++] = CompiledExpression.instruction(opcode, operand);
+	}
+}
@@ -1,5 +1,7 @@
 package com.lun.designpattern.interpreter;
 
+import java.util.Arrays;
+
 public class InterpreterPatternDemo {
 
 	   //规则：Robert 和 John 是男性
@@ -23,9 +25,46 @@ public class InterpreterPatternDemo {
 	      System.out.println("John is male? " + isMale.interpret("John"));
 	      System.out.println("Julie is a married women? " 
 	      + isMarriedWoman.interpret("Married Julie"));
+
+	      //编译成扁平规则，结果与递归求值一致
+	      Expression compiled = ExpressionCompiler.compile(new OrExpression(isMale, isMarriedWoman));
+	      System.out.println("Robert is male or a married women? (compiled) " 
+	      + compiled.interpret("Robert"));
+	      System.out.println("Julie is male or a married women? (compiled) " 
+	      + compiled.interpret("Julie"));
+
+	      //所有终结符共用一个Aho-Corasick自动机，每个context只扫描一次
+	      TerminalIndex index = TerminalIndex.of(Arrays.asList(isMale, isMarriedWoman));
+	      TerminalMatches matches = index.scan("Married Julie");
+	      System.out.println("Julie is a married women? (indexed) " + isMarriedWoman.interpret(matches));
+	      System.out.println("Julie is not male? (indexed) " + new NotExpression(isMale).interpret(matches));
+
+	      //批量求值：每个context扫描一次，得到它满足的规则编号
+	      RuleEngine engine = new RuleEngine(Arrays.asList(isMale, isMarriedWoman));
+	      MatchMatrix matrix = engine.classify(Arrays.asList("John", "Married Julie", "Robert and Julie"));
+	      for (int i = 0; i < matrix.getContextCount(); i++) {
+	         System.out.println("Context " + i + " matches rules " + matrix.getMatchedRules(i));
+	      }
+
+	      //文本规则：相同的子表达式("Robert" OR "John")在两条规则间共享同一个节点
+	      RuleParser parser = new RuleParser();
+	      RuleSet ruleSet = new RuleSet(parser.parseAll(Arrays.asList(
+	            "\"Robert\" OR \"John\"",
+	            "(\"Robert\" OR \"John\") AND NOT \"Married\"")));
+	      System.out.println("Nodes : " + parser.getNodeCount());
+	      System.out.println("Married John matches rules " + ruleSet.evaluate("Married John"));
 	   }
 	   /*
 	    John is male? true
 		Julie is a married women? true
+		Robert is male or a married women? (compiled) true
+		Julie is male or a married women? (compiled) false
+		Julie is a married women? (indexed) true
+		Julie is not male? (indexed) true
+		Context 0 matches rules {0}
+		Context 1 matches rules {1}
+		Context 2 matches rules {0}
+		Nodes : 6
+		Married John matches rules {0}
 	   */
 	}
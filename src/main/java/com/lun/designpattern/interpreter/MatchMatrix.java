@@ -0,0 +1,59 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.BitSet;
+
+/**
+ * RuleEngine的批量求值结果：第i行第j位表示第i个context满足第j条规则
+ *
+ * @author JK
+ *
+ */
+public class MatchMatrix {
+
+	private final BitSet[] rows;
+	private final int ruleCount;
+	private final long elapsedNanos;
+
+	MatchMatrix(BitSet[] rows, int ruleCount, long elapsedNanos) {
+		this.rows = rows;
+		this.ruleCount = ruleCount;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public int getContextCount() {
+		return rows.length;
+	}
+
+	public int getRuleCount() {
+		return ruleCount;
+	}
+
+	public boolean get(int context, int rule) {
+		return rows[context].get(rule);
+	}
+
+	/**
+	 * 第context行命中的规则编号，返回副本
+	 */
+	public BitSet getMatchedRules(int context) {
+		return (BitSet) rows[context].clone();
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public double getContextsPerSecond() {
+		return elapsedNanos == 0 ? 0 : rows.length * 1e9 / elapsedNanos;
+	}
+
+	public double getEvaluationsPerSecond() {
+		return getContextsPerSecond() * ruleCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MatchMatrix [contexts=%d, rules=%d, elapsed=%.3fms, contexts/s=%.0f, evaluations/s=%.0f]",
+				rows.length, ruleCount, elapsedNanos / 1e6, getContextsPerSecond(), getEvaluationsPerSecond());
+	}
+}
@@ -0,0 +1,24 @@
+package com.lun.designpattern.interpreter;
+
+public class NotExpression implements Expression {
+
+	   private Expression expr = null;
+
+	   public NotExpression(Expression expr) { 
+	      this.expr = expr;
+	   }
+
+	   @Override
+	   public boolean interpret(String context) {        
+	      return !expr.interpret(context);
+	   }
+
+	   @Override
+	   public boolean interpret(TerminalMatches matches) {        
+	      return !expr.interpret(matches);
+	   }
+
+	   Expression getExpr() {
+	      return expr;
+	   }
+}
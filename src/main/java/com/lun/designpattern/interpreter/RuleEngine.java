@@ -0,0 +1,129 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 批量规则引擎：多个context × 多条Expression
+ *
+ * 所有规则先编译成CompiledExpression，并共用一个TerminalIndex，
+ * 每个context只扫描一次，再用扫描得到的位图对全部规则求值。
+ * context按块分到ForkJoinPool的工作线程上，每块复用一个扫描位图。
+ *
+ * @author JK
+ *
+ */
+public class RuleEngine {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 10;
+
+	private final CompiledExpression[] rules;
+	private final TerminalIndex index;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	public RuleEngine(List<? extends Expression> rules) {
+		this(rules, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	public RuleEngine(List<? extends Expression> rules, ForkJoinPool pool, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		}
+		this.rules = new CompiledExpression[rules.size()];
+		for (int i = 0; i < this.rules.length; i++) {
+			Expression rule = rules.get(i);
+			this.rules[i] = rule instanceof CompiledExpression ? (CompiledExpression) rule : ExpressionCompiler.compile(rule);
+		}
+		this.index = TerminalIndex.of(Arrays.asList(this.rules));
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	public int getRuleCount() {
+		return rules.length;
+	}
+
+	public TerminalIndex getIndex() {
+		return index;
+	}
+
+	public MatchMatrix classify(List<String> contexts) {
+		long begin = System.nanoTime();
+
+		List<String> source = contexts instanceof RandomAccess ? contexts : new ArrayList<String>(contexts);
+		BitSet[] rows = new BitSet[source.size()];
+		if (source.size() <= chunkSize || pool.getParallelism() <= 1) {
+			evaluate(source, rows, 0, source.size());
+		} else {
+			int chunks = (source.size() + chunkSize - 1) / chunkSize;
+			pool.invoke(new ChunkTask(source, rows, 0, chunks));
+		}
+
+		return new MatchMatrix(rows, rules.length, System.nanoTime() - begin);
+	}
+
+	/**
+	 * 单个context对全部规则求值
+	 */
+	public BitSet classify(String context) {
+		BitSet row = new BitSet(rules.length);
+		evaluate(index.scan(context), row);
+		return row;
+	}
+
+	private void evaluate(List<String> contexts, BitSet[] rows, int from, int to) {
+		BitSet scanned = new BitSet(index.size());
+		for (int i = from; i < to; i++) {
+			String context = contexts.get(i);
+			index.scan(context, scanned);
+			BitSet row = new BitSet(rules.length);
+			evaluate(new TerminalMatches(index, context, scanned), row);
+			rows[i] = row;
+		}
+	}
+
+	private void evaluate(TerminalMatches matches, BitSet row) {
+		for (int rule = 0; rule < rules.length; rule++) {
+			if (rules[rule].interpret(matches)) {
+				row.set(rule);
+			}
+		}
+	}
+
+	/**
+	 * 按块下标区间二分，直到只剩一块时求值
+	 */
+	private final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> contexts;
+		private final BitSet[] rows;
+		private final int fromChunk;
+		private final int toChunk;
+
+		ChunkTask(List<String> contexts, BitSet[] rows, int fromChunk, int toChunk) {
+			this.contexts = contexts;
+			this.rows = rows;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk == 1) {
+				int from = fromChunk * chunkSize;
+				evaluate(contexts, rows, from, Math.min(from + chunkSize, contexts.size()));
+				return;
+			}
+			int mid = (fromChunk + toChunk) >>> 1;
+			invokeAll(new ChunkTask(contexts, rows, fromChunk, mid), new ChunkTask(contexts, rows, mid, toChunk));
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 布尔规则语言的解析器
+ *
+ * <pre>
+ * expr    := and ( OR and )*
+ * and     := not ( AND not )*
+ * not     := NOT not | primary
+ * primary := "string" | ( expr )
+ * </pre>
+ * 关键字不区分大小写，字符串用双引号括起，支持 \" 与 \\ 转义。
+ *
+ * 同一个解析器产生的节点是hash-consed的：结构相同的子表达式（跨规则也一样）只会创建一个节点，
+ * 配合RuleSet使用时每个共享节点对每个context只求值一次。
+ *
+ * @author JK
+ *
+ */
+public class RuleParser {
+
+	private final Map<NodeKey, Expression> interned = new HashMap<NodeKey, Expression>();
+
+	private String text;
+	private int pos;
+
+	public synchronized Expression parse(String rule) {
+		this.text = rule;
+		this.pos = 0;
+		Expression expression = parseOr();
+		skipWhitespace();
+		if (pos < text.length()) {
+			throw error("unexpected '" + text.charAt(pos) + "'");
+		}
+		return expression;
+	}
+
+	public List<Expression> parseAll(List<String> rules) {
+		List<Expression> expressions = new ArrayList<Expression>(rules.size());
+		for (String rule : rules) {
+			expressions.add(parse(rule));
+		}
+		return expressions;
+	}
+
+	/**
+	 * 迄今为止创建的不同节点数
+	 */
+	public synchronized int getNodeCount() {
+		return interned.size();
+	}
+
+	private Expression parseOr() {
+		Expression left = parseAnd();
+		while (keyword("OR")) {
+			left = intern(new NodeKey("OR", null, left, parseAnd()));
+		}
+		return left;
+	}
+
+	private Expression parseAnd() {
+		Expression left = parseNot();
+		while (keyword("AND")) {
+			left = intern(new NodeKey("AND", null, left, parseNot()));
+		}
+		return left;
+	}
+
+	private Expression parseNot() {
+		if (keyword("NOT")) {
+			return intern(new NodeKey("NOT", null, parseNot(), null));
+		}
+		return parsePrimary();
+	}
+
+	private Expression parsePrimary() {
+		skipWhitespace();
+		if (pos >= text.length()) {
+			throw error("unexpected end of rule");
+		}
+		char ch = text.charAt(pos);
+		if (ch == '(') {
+			pos++;
+			Expression expression = parseOr();
+			skipWhitespace();
+			if (pos >= text.length() || text.charAt(pos) != ')') {
+				throw error("expected ')'");
+			}
+			pos++;
+			return expression;
+		}
+		if (ch == '"') {
+			return intern(new NodeKey("TERM", parseString(), null, null));
+		}
+		throw error("unexpected '" + ch + "'");
+	}
+
+	private String parseString() {
+		StringBuilder sb = new StringBuilder();
+		pos++;
+		while (pos < text.length()) {
+			char ch = text.charAt(pos++);
+			if (ch == '"') {
+				return sb.toString();
+			}
+			if (ch == '\\' && pos < text.length()) {
+				ch = text.charAt(pos++);
+			}
+			sb.append(ch);
+		}
+		throw error("unterminated string");
+	}
+
+	private boolean keyword(String keyword) {
+		skipWhitespace();
+		int end = pos + keyword.length();
+		if (end > text.length() || !text.regionMatches(true, pos, keyword, 0, keyword.length())) {
+			return false;
+		}
+		if (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+			return false;
+		}
+		pos = end;
+		return true;
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + pos + ": " + text);
+	}
+
+	private Expression intern(NodeKey key) {
+		Expression expression = interned.get(key);
+		if (expression == null) {
+			switch (key.kind) {
+			case "AND":
+				expression = new AndExpression(key.left, key.right);
+				break;
+			case "OR":
+				expression = new OrExpression(key.left, key.right);
+				break;
+			case "NOT":
+				expression = new NotExpression(key.left);
+				break;
+			default:
+				expression = new TerminalExpression(key.data);
+			}
+			interned.put(key, expression);
+		}
+		return expression;
+	}
+
+	/**
+	 * 子节点已经是interned的，所以按identity比较子节点即可
+	 */
+	private static final class NodeKey {
+		private final String kind;
+		private final String data;
+		private final Expression left;
+		private final Expression right;
+
+		NodeKey(String kind, String data, Expression left, Expression right) {
+			this.kind = kind;
+			this.data = data;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = kind.hashCode();
+			h = 31 * h + (data == null ? 0 : data.hashCode());
+			h = 31 * h + System.identityHashCode(left);
+			return 31 * h + System.identityHashCode(right);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NodeKey)) {
+				return false;
+			}
+			NodeKey other = (NodeKey) obj;
+			return kind.equals(other.kind) && (data == null ? other.data == null : data.equals(other.data))
+					&& left == other.left && right == other.right;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组规则组成的表达式DAG
+ *
+ * 按对象identity给所有可达节点编号，被多条规则共享的节点（例如RuleParser产生的hash-consed节点）
+ * 只占一个编号，对每个context只求值一次并记住结果。
+ * 终结符统一交给TerminalIndex，每个context只扫描一遍。
+ *
+ * @author JK
+ *
+ */
+public class RuleSet {
+
+	private static final byte TERM = 0;
+	private static final byte AND = 1;
+	private static final byte OR = 2;
+	private static final byte NOT = 3;
+	private static final byte CALL = 4;
+
+	private static final byte UNKNOWN = 0;
+	private static final byte FALSE = 1;
+	private static final byte TRUE = 2;
+
+	private final int[] roots;
+	private final byte[] kinds;
+	private final int[] left;
+	private final int[] right;
+	private final Expression[] nodes;
+	private final TerminalIndex index;
+	private final int[] terminalIds;
+
+	public RuleSet(List<? extends Expression> rules) {
+		Map<Expression, Integer> ids = new IdentityHashMap<Expression, Integer>();
+		List<Expression> order = new ArrayList<Expression>();
+		roots = new int[rules.size()];
+		for (int i = 0; i < roots.length; i++) {
+			roots[i] = number(rules.get(i), ids, order);
+		}
+
+		int size = order.size();
+		nodes = order.toArray(new Expression[size]);
+		kinds = new byte[size];
+		left = new int[size];
+		right = new int[size];
+		List<String> terminals = new ArrayList<String>();
+		for (int id = 0; id < size; id++) {
+			Expression node = nodes[id];
+			if (node instanceof AndExpression) {
+				kinds[id] = AND;
+				left[id] = ids.get(((AndExpression) node).getExpr1());
+				right[id] = ids.get(((AndExpression) node).getExpr2());
+			} else if (node instanceof OrExpression) {
+				kinds[id] = OR;
+				left[id] = ids.get(((OrExpression) node).getExpr1());
+				right[id] = ids.get(((OrExpression) node).getExpr2());
+			} else if (node instanceof NotExpression) {
+				kinds[id] = NOT;
+				left[id] = ids.get(((NotExpression) node).getExpr());
+			} else if (node instanceof TerminalExpression) {
+				kinds[id] = TERM;
+				terminals.add(((TerminalExpression) node).getData());
+			} else {
+				kinds[id] = CALL;
+			}
+		}
+
+		index = new TerminalIndex(terminals);
+		terminalIds = new int[size];
+		for (int id = 0; id < size; id++) {
+			terminalIds[id] = kinds[id] == TERM ? index.indexOf(((TerminalExpression) nodes[id]).getData()) : -1;
+		}
+	}
+
+	/**
+	 * 后序编号，子节点的编号总是小于父节点
+	 */
+	private static int number(Expression expression, Map<Expression, Integer> ids, List<Expression> order) {
+		Integer id = ids.get(expression);
+		if (id != null) {
+			return id;
+		}
+		if (expression instanceof AndExpression) {
+			number(((AndExpression) expression).getExpr1(), ids, order);
+			number(((AndExpression) expression).getExpr2(), ids, order);
+		} else if (expression instanceof OrExpression) {
+			number(((OrExpression) expression).getExpr1(), ids, order);
+			number(((OrExpression) expression).getExpr2(), ids, order);
+		} else if (expression instanceof NotExpression) {
+			number(((NotExpression) expression).getExpr(), ids, order);
+		}
+		id = order.size();
+		ids.put(expression, id);
+		order.add(expression);
+		return id;
+	}
+
+	public int getRuleCount() {
+		return roots.length;
+	}
+
+	/**
+	 * DAG中不同节点的个数
+	 */
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	/**
+	 * 返回context满足的规则编号
+	 */
+	public BitSet evaluate(String context) {
+		TerminalMatches matches = index.scan(context);
+		byte[] memo = new byte[nodes.length];
+		BitSet result = new BitSet(roots.length);
+		for (int rule = 0; rule < roots.length; rule++) {
+			if (evaluate(roots[rule], matches, memo)) {
+				result.set(rule);
+			}
+		}
+		return result;
+	}
+
+	private boolean evaluate(int id, TerminalMatches matches, byte[] memo) {
+		if (memo[id] != UNKNOWN) {
+			return memo[id] == TRUE;
+		}
+		boolean value;
+		switch (kinds[id]) {
+		case TERM:
+			value = matches.getMatched().get(terminalIds[id]);
+			break;
+		case AND:
+			value = evaluate(left[id], matches, memo) && evaluate(right[id], matches, memo);
+			break;
+		case OR:
+			value = evaluate(left[id], matches, memo) || evaluate(right[id], matches, memo);
+			break;
+		case NOT:
+			value = !evaluate(left[id], matches, memo);
+			break;
+		default:
+			value = nodes[id].interpret(matches);
+		}
+		memo[id] = value ? TRUE : FALSE;
+		return value;
+	}
+}
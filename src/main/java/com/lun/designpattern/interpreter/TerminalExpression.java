@@ -16,4 +16,13 @@ public class TerminalExpression implements Expression {
 		return false;
 	}
 
+	@Override
+	public boolean interpret(TerminalMatches matches) {
+		return matches.contains(data);
+	}
+
+	String getData() {
+		return data;
+	}
+
 }
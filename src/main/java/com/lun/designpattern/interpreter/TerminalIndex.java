@@ -0,0 +1,202 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 所有终结符共享的Aho-Corasick自动机
+ *
+ * 每个context只扫描一遍，得到命中终结符的位图，And/Or/Not再基于位图求值，
+ * 代替每个TerminalExpression各自调用一次context.contains。
+ *
+ * 构建时把出现过的字符压缩成字母表，失败链提前展开成完整的DFA转移表，
+ * 扫描时每个字符只需一次查表。
+ *
+ * @author JK
+ *
+ */
+public class TerminalIndex {
+
+	private final String[] terminals;
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	private final int[] asciiClass = new int[128];
+	private final Map<Character, Integer> otherClass = new HashMap<Character, Integer>();
+	private final int alphabetSize;
+
+	private final int[] delta;
+	private final int[][] outputs;
+
+	public TerminalIndex(Collection<String> terminals) {
+		Set<String> distinct = new LinkedHashSet<String>(terminals);
+		this.terminals = distinct.toArray(new String[0]);
+		for (int i = 0; i < this.terminals.length; i++) {
+			ids.put(this.terminals[i], i);
+		}
+
+		int classes = 1; // 0表示不在任何终结符中出现的字符
+		for (String terminal : this.terminals) {
+			for (int i = 0; i < terminal.length(); i++) {
+				char ch = terminal.charAt(i);
+				if (charClass(ch) == 0) {
+					if (ch < 128) {
+						asciiClass[ch] = classes++;
+					} else {
+						otherClass.put(ch, classes++);
+					}
+				}
+			}
+		}
+		this.alphabetSize = classes;
+
+		//1.构建trie
+		List<int[]> trie = new ArrayList<int[]>();
+		List<List<Integer>> own = new ArrayList<List<Integer>>();
+		trie.add(new int[alphabetSize]);
+		own.add(new ArrayList<Integer>());
+		for (int id = 0; id < this.terminals.length; id++) {
+			String terminal = this.terminals[id];
+			int state = 0;
+			for (int i = 0; i < terminal.length(); i++) {
+				int c = charClass(terminal.charAt(i));
+				if (trie.get(state)[c] == 0) {
+					trie.get(state)[c] = trie.size();
+					trie.add(new int[alphabetSize]);
+					own.add(new ArrayList<Integer>());
+				}
+				state = trie.get(state)[c];
+			}
+			own.get(state).add(id);
+		}
+
+		//2.按BFS顺序计算失败指针，同时展开为DFA并合并输出
+		int states = trie.size();
+		this.delta = new int[states * alphabetSize];
+		this.outputs = new int[states][];
+		int[] fail = new int[states];
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+
+		outputs[0] = toArray(own.get(0), null);
+		for (int c = 0; c < alphabetSize; c++) {
+			int child = trie.get(0)[c];
+			if (child != 0) {
+				delta[c] = child;
+				fail[child] = 0;
+				queue.add(child);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			outputs[state] = toArray(own.get(state), outputs[fail[state]]);
+			for (int c = 0; c < alphabetSize; c++) {
+				int child = trie.get(state)[c];
+				if (child != 0) {
+					fail[child] = delta[fail[state] * alphabetSize + c];
+					delta[state * alphabetSize + c] = child;
+					queue.add(child);
+				} else {
+					delta[state * alphabetSize + c] = delta[fail[state] * alphabetSize + c];
+				}
+			}
+		}
+	}
+
+	/**
+	 * 收集规则树中出现的全部终结符
+	 */
+	public static TerminalIndex of(Collection<? extends Expression> rules) {
+		List<String> terminals = new ArrayList<String>();
+		for (Expression rule : rules) {
+			collect(rule, terminals);
+		}
+		return new TerminalIndex(terminals);
+	}
+
+	private static void collect(Expression expression, List<String> terminals) {
+		if (expression instanceof TerminalExpression) {
+			terminals.add(((TerminalExpression) expression).getData());
+		} else if (expression instanceof AndExpression) {
+			collect(((AndExpression) expression).getExpr1(), terminals);
+			collect(((AndExpression) expression).getExpr2(), terminals);
+		} else if (expression instanceof OrExpression) {
+			collect(((OrExpression) expression).getExpr1(), terminals);
+			collect(((OrExpression) expression).getExpr2(), terminals);
+		} else if (expression instanceof NotExpression) {
+			collect(((NotExpression) expression).getExpr(), terminals);
+		} else if (expression instanceof CompiledExpression) {
+			((CompiledExpression) expression).collectTerminals(terminals);
+		}
+	}
+
+	private static int[] toArray(List<Integer> own, int[] inherited) {
+		int inheritedLength = inherited == null ? 0 : inherited.length;
+		int[] merged = new int[own.size() + inheritedLength];
+		for (int i = 0; i < own.size(); i++) {
+			merged[i] = own.get(i);
+		}
+		if (inheritedLength > 0) {
+			System.arraycopy(inherited, 0, merged, own.size(), inheritedLength);
+		}
+		return merged;
+	}
+
+	private int charClass(char ch) {
+		if (ch < 128) {
+			return asciiClass[ch];
+		}
+		Integer c = otherClass.get(ch);
+		return c == null ? 0 : c;
+	}
+
+	public int size() {
+		return terminals.length;
+	}
+
+	/**
+	 * 终结符编号，未登记时返回-1
+	 */
+	public int indexOf(String terminal) {
+		Integer id = ids.get(terminal);
+		return id == null ? -1 : id;
+	}
+
+	public String getTerminal(int id) {
+		return terminals[id];
+	}
+
+	public TerminalMatches scan(String context) {
+		return new TerminalMatches(this, context, scan(context, new BitSet(terminals.length)));
+	}
+
+	/**
+	 * 扫描context一次，把命中的终结符编号写入matched（会先清空），便于批量场景复用位图
+	 */
+	public BitSet scan(String context, BitSet matched) {
+		matched.clear();
+		int found = 0;
+		int state = 0;
+		mark(outputs[0], matched);
+		for (int i = 0; i < context.length() && found < terminals.length; i++) {
+			state = delta[state * alphabetSize + charClass(context.charAt(i))];
+			if (outputs[state].length > 0) {
+				mark(outputs[state], matched);
+				found = matched.cardinality();
+			}
+		}
+		return matched;
+	}
+
+	private static void mark(int[] output, BitSet matched) {
+		for (int id : output) {
+			matched.set(id);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.lun.designpattern.interpreter;
+
+import java.util.BitSet;
+
+/**
+ * 一个context经TerminalIndex扫描后的结果
+ *
+ * @author JK
+ *
+ */
+public class TerminalMatches {
+
+	private final TerminalIndex index;
+	private final String context;
+	private final BitSet matched;
+
+	public TerminalMatches(TerminalIndex index, String context, BitSet matched) {
+		this.index = index;
+		this.context = context;
+		this.matched = matched;
+	}
+
+	public TerminalIndex getIndex() {
+		return index;
+	}
+
+	public String getContext() {
+		return context;
+	}
+
+	public BitSet getMatched() {
+		return matched;
+	}
+
+	/**
+	 * 终结符不在索引中时退化为context.contains
+	 */
+	public boolean contains(String terminal) {
+		int id = index.indexOf(terminal);
+		return id < 0 ? context.contains(terminal) : matched.get(id);
+	}
+}
@@ -1,9 +1,127 @@
 package com.lun.designpattern.mediator;
 
+import java.util.Arrays;
 import java.util.Date;
 
+/**
+ * 聊天室（中介者）
+ *
+ * 静态的showMessage保留最初的用法：在调用线程上直接打印。
+ * 由MessageBroker创建的具名聊天室实例管理成员的订阅，publish把消息交给MessageBroker异步、成批地分发给所有成员。
+ *
+ * @author JK
+ *
+ */
 public class ChatRoom {
+
+	private static final Subscription[] EMPTY = new Subscription[0];
+
+	private final String name;
+	private final MessageBroker broker;
+	//写时复制，分发线程读取时不加锁
+	private volatile Subscription[] subscriptions = EMPTY;
+
+	ChatRoom(String name, MessageBroker broker) {
+		this.name = name;
+		this.broker = broker;
+	}
+
 	public static void showMessage(User user, String message) {
 		System.out.println(new Date().toString() + " [" + user.getName() + "] : " + message);
 	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 用户加入聊天室，收到的每条消息打印为“时间 [聊天室] [发送者] -> 成员 : 消息”
+	 *
+	 * 比showMessage多出聊天室与接收成员：多个聊天室、多个成员的输出交错在一起时才能区分
+	 */
+	public Subscription join(User user) {
+		return subscribe(user, batch -> {
+			for (int i = 0; i < batch.size(); i++) {
+				System.out.println(new Date(batch.getTimestamp(i)).toString() + " [" + name + "] ["
+						+ batch.getSender(i).getName() + "] -> " + user.getName() + " : " + batch.getMessage(i));
+			}
+		});
+	}
+
+	public synchronized Subscription subscribe(User user, MessageListener listener) {
+		Subscription subscription = new Subscription(this, user, listener);
+		Subscription[] current = subscriptions;
+		Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = subscription;
+		subscriptions = updated;
+		return subscription;
+	}
+
+	/**
+	 * 该用户在本聊天室的所有订阅都被取消
+	 */
+	public synchronized void leave(User user) {
+		Subscription[] current = subscriptions;
+		Subscription[] updated = new Subscription[current.length];
+		int size = 0;
+		for (Subscription subscription : current) {
+			if (subscription.user != user) {
+				updated[size++] = subscription;
+			}
+		}
+		subscriptions = Arrays.copyOf(updated, size);
+	}
+
+	private synchronized void unsubscribe(Subscription subscription) {
+		Subscription[] current = subscriptions;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == subscription) {
+				Subscription[] updated = new Subscription[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				subscriptions = updated;
+				return;
+			}
+		}
+	}
+
+	Subscription[] subscriptions() {
+		return subscriptions;
+	}
+
+	public int getMemberCount() {
+		return subscriptions.length;
+	}
+
+	/**
+	 * 发布消息后立即返回，消息由MessageBroker异步分发
+	 */
+	public void publish(User sender, String message) {
+		broker.publish(this, sender, message);
+	}
+
+	@Override
+	public String toString() {
+		return "ChatRoom [" + name + ", members=" + getMemberCount() + "]";
+	}
+
+	public static final class Subscription {
+		private final ChatRoom room;
+		private final User user;
+		final MessageListener listener;
+
+		private Subscription(ChatRoom room, User user, MessageListener listener) {
+			this.room = room;
+			this.user = user;
+			this.listener = listener;
+		}
+
+		public User getUser() {
+			return user;
+		}
+
+		public void cancel() {
+			room.unsubscribe(this);
+		}
+	}
 }
@@ -1,17 +1,73 @@
 package com.lun.designpattern.mediator;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
 public class MediatorPatternDemo {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException {
 		User robert = new User("Robert");
 		User john = new User("John");
 
 		robert.sendMessage("Hi! John!");
 		john.sendMessage("Hello! Robert!");
+
+		//具名聊天室：成员订阅后，消息由分发线程异步送达
+		try (MessageBroker broker = new MessageBroker(2, 1024, 64)) {
+			ChatRoom lobby = broker.getRoom("lobby");
+			lobby.join(robert);
+			lobby.join(john);
+			robert.sendMessage(lobby, "Hi! John!");
+			john.sendMessage(lobby, "Hello! Robert!");
+			broker.awaitDelivered();
+		}
+
+		//吞吐量：1000个聊天室，每个3个成员，4个线程各发布100万条消息
+		try (MessageBroker broker = new MessageBroker()) {
+			int roomCount = 1000;
+			ChatRoom[] rooms = new ChatRoom[roomCount];
+			LongAdder received = new LongAdder();
+			for (int i = 0; i < roomCount; i++) {
+				rooms[i] = broker.getRoom("room-" + i);
+				for (int m = 0; m < 3; m++) {
+					rooms[i].subscribe(new User("member-" + m), batch -> received.add(batch.size()));
+				}
+			}
+
+			int producers = 4;
+			int perProducer = 1000000;
+			CountDownLatch done = new CountDownLatch(producers);
+			long begin = System.nanoTime();
+			for (int p = 0; p < producers; p++) {
+				User sender = new User("producer-" + p);
+				int offset = p;
+				new Thread(() -> {
+					for (int i = 0; i < perProducer; i++) {
+						//同一个聊天室连续发送几条，模拟真实的突发流量
+						sender.sendMessage(rooms[((i >> 3) + offset * 250) % roomCount], "hello");
+					}
+					done.countDown();
+				}).start();
+			}
+			done.await();
+			broker.awaitDelivered();
+			long spent = System.nanoTime() - begin;
+
+			System.out.println("published : " + broker.getPublished() + ", delivered : " + broker.getDelivered()
+					+ ", received == delivered : " + (received.sum() == broker.getDelivered()));
+			System.out.println("throughput : " + (long) (broker.getPublished() / (spent / 1e9)) + " messages/s, "
+					+ "average batch : " + broker.getDelivered() / 3 / broker.getBatches());
+		}
 	}
 
 }
 /*
 Wed Aug 08 17:57:25 CST 2018 [Robert] : Hi! John!
 Wed Aug 08 17:57:25 CST 2018 [John] : Hello! Robert!
-*/
\ No newline at end of file
+Wed Aug 08 17:57:25 CST 2018 [lobby] [Robert] -> Robert : Hi! John!
+Wed Aug 08 17:57:25 CST 2018 [lobby] [John] -> Robert : Hello! Robert!
+Wed Aug 08 17:57:25 CST 2018 [lobby] [Robert] -> John : Hi! John!
+Wed Aug 08 17:57:25 CST 2018 [lobby] [John] -> John : Hello! Robert!
+published : 4000000, delivered : 12000000, received == delivered : true
+throughput : 5576434 messages/s, average batch : 7
+*/
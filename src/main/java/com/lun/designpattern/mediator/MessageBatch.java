@@ -0,0 +1,70 @@
+package com.lun.designpattern.mediator;
+
+/**
+ * 同一个聊天室中连续的一批消息，直接读取环形缓冲区中的槽位（回调中发布的消息则读取溢出队列取出的那一段），不复制消息
+ *
+ * 每个分发线程复用同一个MessageBatch对象，只在MessageListener.onMessages期间有效。
+ *
+ * @author JK
+ *
+ */
+public final class MessageBatch {
+
+	private final MessageBroker.Dispatcher dispatcher;
+	private ChatRoom room;
+	private long first;
+	private int size;
+	private boolean overflow;
+
+	MessageBatch(MessageBroker.Dispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+	}
+
+	void reset(ChatRoom room, long first, int size) {
+		this.room = room;
+		this.first = first;
+		this.size = size;
+		this.overflow = false;
+	}
+
+	void resetOverflow(ChatRoom room, int first, int size) {
+		reset(room, first, size);
+		this.overflow = true;
+	}
+
+	public ChatRoom getRoom() {
+		return room;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public User getSender(int i) {
+		int index = index(i);
+		return overflow ? dispatcher.overflowBatch[index].sender : dispatcher.senders[index & dispatcher.mask];
+	}
+
+	public String getMessage(int i) {
+		int index = index(i);
+		return overflow ? dispatcher.overflowBatch[index].message : dispatcher.messages[index & dispatcher.mask];
+	}
+
+	/**
+	 * 发布时的System.currentTimeMillis()
+	 */
+	public long getTimestamp(int i) {
+		int index = index(i);
+		return overflow ? dispatcher.overflowBatch[index].timestamp : dispatcher.timestamps[index & dispatcher.mask];
+	}
+
+	/**
+	 * 环形缓冲区中还需要再与mask取与才是槽位
+	 */
+	private int index(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("index: " + i + ", size: " + size);
+		}
+		return (int) (first + i);
+	}
+}
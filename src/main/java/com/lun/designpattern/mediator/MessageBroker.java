@@ -0,0 +1,420 @@
+package com.lun.designpattern.mediator;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 中介者引擎：管理多个具名聊天室，把消息成批地分发给聊天室成员
+ *
+ * 每个分发线程拥有一个预分配的环形缓冲区（多生产者、单消费者）。聊天室按名字固定分配给一个分发线程，
+ * 所以同一个聊天室的消息保持发布顺序，而不同的聊天室在多个线程上并行分发。
+ *
+ * 发布只是一次CAS领取序号、写入槽位的几个数组元素，不分配对象、不加锁；缓冲区满时发布者自旋等待（背压）。
+ * 关闭标志与序号放在同一个AtomicLong中，close之后不可能再领取到序号，已领取的消息都会在关闭前分发完。
+ * 分发线程每次取出一段已发布的连续序号，把其中同一个聊天室的连续消息作为一个MessageBatch交给每个成员。
+ *
+ * 分发线程自己（即MessageListener回调中）发布的消息不进入环形缓冲区：缓冲区满时能腾出空间的只有分发线程本身，
+ * 在回调里等待空间会死锁。这些消息放入目标分发线程的溢出队列（每条分配一个节点，不限长度），
+ * 在两批环形缓冲区的消息之间分发；同一个回调发布的消息之间仍保持发布顺序。
+ *
+ * @author JK
+ *
+ */
+public class MessageBroker implements AutoCloseable {
+
+	private final ConcurrentHashMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+	//next的最高位表示已关闭
+	private static final long CLOSED = Long.MIN_VALUE;
+
+	private final Dispatcher[] dispatchers;
+
+	private final LongAdder listenerFailures = new LongAdder();
+
+	public MessageBroker() {
+		this(Runtime.getRuntime().availableProcessors(), 1 << 16, 256);
+	}
+
+	/**
+	 * @param dispatcherCount 分发线程数
+	 * @param ringSize 每个分发线程的缓冲区槽位数，必须是2的幂
+	 * @param maxBatch 每次最多取出的消息数
+	 */
+	public MessageBroker(int dispatcherCount, int ringSize, int maxBatch) {
+		if (dispatcherCount <= 0 || maxBatch <= 0) {
+			throw new IllegalArgumentException("dispatcherCount and maxBatch must be positive");
+		}
+		if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+			throw new IllegalArgumentException("ringSize must be a power of two: " + ringSize);
+		}
+		dispatchers = new Dispatcher[dispatcherCount];
+		for (int i = 0; i < dispatcherCount; i++) {
+			dispatchers[i] = new Dispatcher(i, ringSize, maxBatch);
+			dispatchers[i].start();
+		}
+	}
+
+	/**
+	 * 返回指定名字的聊天室，不存在时创建
+	 */
+	public ChatRoom getRoom(String name) {
+		return rooms.computeIfAbsent(name, n -> new ChatRoom(n, this));
+	}
+
+	public int getRoomCount() {
+		return rooms.size();
+	}
+
+	void publish(ChatRoom room, User sender, String message) {
+		Dispatcher dispatcher = dispatchers[(room.getName().hashCode() & 0x7FFFFFFF) % dispatchers.length];
+		dispatcher.publish(room, sender, message, System.currentTimeMillis());
+	}
+
+	/**
+	 * 等待此前发布的消息全部分发完，包括分发过程中回调发布的消息；分发线程异常退出时抛出IllegalStateException
+	 *
+	 * 不能在MessageListener回调中调用
+	 */
+	public void awaitDelivered() {
+		while (true) {
+			long accepted = accepted();
+			for (Dispatcher dispatcher : dispatchers) {
+				dispatcher.awaitIdle();
+			}
+			//这一轮等待期间回调又发布了消息（可能发往已经检查过的分发线程），再等一轮
+			if (accepted() == accepted) {
+				return;
+			}
+		}
+	}
+
+	private long accepted() {
+		long total = 0;
+		for (Dispatcher dispatcher : dispatchers) {
+			total += dispatcher.claimed() + dispatcher.overflowed.get();
+		}
+		return total;
+	}
+
+	public long getPublished() {
+		long total = 0;
+		for (Dispatcher dispatcher : dispatchers) {
+			total += dispatcher.claimed() + dispatcher.overflowed.get();
+		}
+		return total;
+	}
+
+	/**
+	 * 按成员计的投递数，一条消息投递给3个成员算3次
+	 */
+	public long getDelivered() {
+		long total = 0;
+		for (Dispatcher dispatcher : dispatchers) {
+			total += dispatcher.delivered;
+		}
+		return total;
+	}
+
+	public long getBatches() {
+		long total = 0;
+		for (Dispatcher dispatcher : dispatchers) {
+			total += dispatcher.batches;
+		}
+		return total;
+	}
+
+	/**
+	 * MessageListener抛出异常的次数，异常不会中断分发
+	 */
+	public long getListenerFailures() {
+		return listenerFailures.sum();
+	}
+
+	/**
+	 * 停止接收新消息，分发完已发布的消息后结束分发线程
+	 */
+	@Override
+	public void close() {
+		for (Dispatcher dispatcher : dispatchers) {
+			long current;
+			do {
+				current = dispatcher.next.get();
+			} while ((current & CLOSED) == 0 && !dispatcher.next.compareAndSet(current, current | CLOSED));
+		}
+		for (Dispatcher dispatcher : dispatchers) {
+			try {
+				dispatcher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	final class Dispatcher extends Thread {
+
+		final int mask;
+		private final int capacity;
+		private final int maxBatch;
+
+		private final ChatRoom[] rooms;
+		final User[] senders;
+		final String[] messages;
+		final long[] timestamps;
+		//槽位中已写入完成的序号，发布者写完其它数组元素后再写它
+		private final AtomicLongArray published;
+
+		private final AtomicLong next = new AtomicLong();
+		private final AtomicLong consumed = new AtomicLong(-1);
+
+		//回调中发布的消息；overflowed只增不减（撤回的除外），overflowDelivered只由分发线程写
+		private final ConcurrentLinkedQueue<Pending> overflow = new ConcurrentLinkedQueue<>();
+		private final AtomicLong overflowed = new AtomicLong();
+		private volatile long overflowDelivered;
+		final Pending[] overflowBatch;
+
+		private final MessageBatch batch = new MessageBatch(this);
+		//分发线程不再从环形缓冲区取消息（已关闭并取完，或异常退出）后置为true，发布者据此不再等待
+		private volatile boolean stopped;
+		//下一个要分发的序号，只由分发线程读写
+		private long cursor;
+		//只由分发线程写
+		private volatile long delivered;
+		private volatile long batches;
+
+		Dispatcher(int index, int capacity, int maxBatch) {
+			super("message-dispatcher-" + index);
+			setDaemon(true);
+			this.capacity = capacity;
+			this.mask = capacity - 1;
+			this.maxBatch = maxBatch;
+			this.rooms = new ChatRoom[capacity];
+			this.senders = new User[capacity];
+			this.messages = new String[capacity];
+			this.timestamps = new long[capacity];
+			this.published = new AtomicLongArray(capacity);
+			this.overflowBatch = new Pending[maxBatch];
+			for (int i = 0; i < capacity; i++) {
+				published.set(i, -1);
+			}
+		}
+
+		/**
+		 * 已领取的序号数，不含关闭标志
+		 */
+		long claimed() {
+			return next.get() & ~CLOSED;
+		}
+
+		void publish(ChatRoom room, User sender, String message, long timestamp) {
+			if (Thread.currentThread() instanceof Dispatcher) {
+				//在分发线程上等待缓冲区空间会死锁（包括两个分发线程互相等待），改走溢出队列
+				offer(room, sender, message, timestamp);
+				return;
+			}
+			long sequence;
+			do {
+				sequence = next.get();
+				if ((sequence & CLOSED) != 0) {
+					throw new IllegalStateException("message broker closed");
+				}
+				if (stopped) {
+					throw new IllegalStateException(getName() + " stopped");
+				}
+			} while (!next.compareAndSet(sequence, sequence + 1));
+			int spins = 0;
+			while (sequence - capacity > consumed.get()) {
+				if (stopped) {
+					throw new IllegalStateException(getName() + " stopped");
+				}
+				spins = backoff(spins);
+			}
+			int slot = (int) sequence & mask;
+			rooms[slot] = room;
+			senders[slot] = sender;
+			messages[slot] = message;
+			timestamps[slot] = timestamp;
+			published.lazySet(slot, sequence);
+		}
+
+		private void offer(ChatRoom room, User sender, String message, long timestamp) {
+			if ((next.get() & CLOSED) != 0) {
+				throw new IllegalStateException("message broker closed");
+			}
+			if (stopped) {
+				throw new IllegalStateException(getName() + " stopped");
+			}
+			Pending pending = new Pending(room, sender, message, timestamp);
+			overflowed.incrementAndGet();
+			overflow.add(pending);
+			//分发线程在置stopped之后还会再取一次溢出队列，撤回成功说明它不会再分发这条消息
+			if (stopped && overflow.remove(pending)) {
+				overflowed.decrementAndGet();
+				throw new IllegalStateException(getName() + " stopped");
+			}
+		}
+
+		/**
+		 * 等待调用时已接收的消息分发完
+		 */
+		void awaitIdle() {
+			long target = claimed() - 1;
+			long overflowTarget = overflowed.get();
+			while (consumed.get() < target || overflowDelivered < overflowTarget) {
+				if (!isAlive() && (consumed.get() < target || overflowDelivered < overflowTarget)) {
+					throw new IllegalStateException(getName() + " stopped before delivering all messages");
+				}
+				LockSupport.parkNanos(100000);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				dispatchLoop();
+				stopped = true;
+				//置stopped之前刚放入溢出队列的消息，发布者撤回不了的在这里分发
+				while (dispatchOverflow()) {
+				}
+			} finally {
+				stopped = true;
+			}
+		}
+
+		private void dispatchLoop() {
+			int idle = 0;
+			while (true) {
+				int available = 0;
+				while (available < maxBatch && published.get((int) (cursor + available) & mask) == cursor + available) {
+					available++;
+				}
+				if (available > 0) {
+					dispatch(cursor, available);
+					cursor += available;
+					consumed.lazySet(cursor - 1);
+				}
+				if (dispatchOverflow() || available > 0) {
+					idle = 0;
+					continue;
+				}
+				long claimed = next.get();
+				if ((claimed & CLOSED) != 0 && cursor == (claimed & ~CLOSED) && overflow.isEmpty()) {
+					return;
+				}
+				idle = backoff(idle);
+			}
+		}
+
+		/**
+		 * 分发溢出队列中最多maxBatch条消息，队列为空时返回false
+		 */
+		private boolean dispatchOverflow() {
+			int count = 0;
+			Pending pending;
+			while (count < maxBatch && (pending = overflow.poll()) != null) {
+				overflowBatch[count++] = pending;
+			}
+			if (count == 0) {
+				return false;
+			}
+			long deliveredNow = 0;
+			long batchesNow = 0;
+			int i = 0;
+			while (i < count) {
+				ChatRoom room = overflowBatch[i].room;
+				int end = i + 1;
+				while (end < count && overflowBatch[end].room == room) {
+					end++;
+				}
+				batch.resetOverflow(room, i, end - i);
+				deliveredNow += deliver(room, end - i);
+				batchesNow++;
+				i = end;
+			}
+			Arrays.fill(overflowBatch, 0, count, null);
+			delivered += deliveredNow;
+			batches += batchesNow;
+			overflowDelivered += count;
+			return true;
+		}
+
+		/**
+		 * 同一个聊天室的连续消息作为一批交给该聊天室的每个成员
+		 */
+		private void dispatch(long first, int count) {
+			long deliveredNow = 0;
+			long batchesNow = 0;
+			int i = 0;
+			while (i < count) {
+				ChatRoom room = rooms[(int) (first + i) & mask];
+				int end = i + 1;
+				while (end < count && rooms[(int) (first + end) & mask] == room) {
+					end++;
+				}
+				batch.reset(room, first + i, end - i);
+				deliveredNow += deliver(room, end - i);
+				batchesNow++;
+				i = end;
+			}
+			//释放引用，避免缓冲区让已分发的消息一直存活
+			for (int k = 0; k < count; k++) {
+				int slot = (int) (first + k) & mask;
+				rooms[slot] = null;
+				senders[slot] = null;
+				messages[slot] = null;
+			}
+			delivered += deliveredNow;
+			batches += batchesNow;
+		}
+
+		/**
+		 * 把当前batch交给聊天室的每个成员，返回按成员计的投递数
+		 */
+		private long deliver(ChatRoom room, int size) {
+			long deliveredNow = 0;
+			for (ChatRoom.Subscription subscription : room.subscriptions()) {
+				try {
+					subscription.listener.onMessages(batch);
+				} catch (Throwable e) {
+					//包括Error，成员的回调不能让分发线程退出
+					listenerFailures.increment();
+				}
+				deliveredNow += size;
+			}
+			return deliveredNow;
+		}
+	}
+
+	static final class Pending {
+		final ChatRoom room;
+		final User sender;
+		final String message;
+		final long timestamp;
+
+		Pending(ChatRoom room, User sender, String message, long timestamp) {
+			this.room = room;
+			this.sender = sender;
+			this.message = message;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * 先自旋，再让出CPU，最后短暂休眠
+	 */
+	private static int backoff(int spins) {
+		if (spins < 100) {
+			return spins + 1;
+		}
+		if (spins < 200) {
+			Thread.yield();
+			return spins + 1;
+		}
+		LockSupport.parkNanos(50000);
+		return spins;
+	}
+}
@@ -0,0 +1,18 @@
+package com.lun.designpattern.mediator;
+
+/**
+ * 聊天室成员接收消息的回调，在分发线程上被调用
+ *
+ * 同一个聊天室的消息按发布顺序、成批地交给每个成员；MessageBatch只在回调期间有效，不能保存下来。
+ * 回调应当尽快返回，它会阻塞同一分发线程上的其它聊天室。
+ *
+ * 回调中可以调用ChatRoom.publish（例如机器人回复消息）：此时消息不等待环形缓冲区的空间，
+ * 而是放入目标分发线程的溢出队列，在当前这批之后分发，因此缓冲区满时也不会死锁。
+ * 回调中不能调用MessageBroker.awaitDelivered或close，它们要等待的正是当前的分发线程。
+ *
+ * @author JK
+ *
+ */
+public interface MessageListener {
+	void onMessages(MessageBatch batch);
+}
@@ -18,4 +18,11 @@ public class User {
 	public void sendMessage(String message) {
 		ChatRoom.showMessage(this, message);
 	}
+
+	/**
+	 * 通过具名聊天室发送，消息异步分发给聊天室的所有成员
+	 */
+	public void sendMessage(ChatRoom room, String message) {
+		room.publish(this, message);
+	}
 }
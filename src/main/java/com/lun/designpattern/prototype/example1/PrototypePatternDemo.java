@@ -1,8 +1,15 @@
 package com.lun.designpattern.prototype.example1;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class PrototypePatternDemo {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 	      ShapeCache.loadCache();
 
 	      Shape clonedShape = (Shape) ShapeCache.getShape("1");
@@ -13,6 +20,49 @@ public class PrototypePatternDemo {
 
 	      Shape clonedShape3 = (Shape) ShapeCache.getShape("3");
 	      System.out.println("Shape : " + clonedShape3.getType());   
+
+	      //为Circle开启预克隆池，getShape直接取走后台提前clone好的实例
+	      PrototypeRegistry registry = new PrototypeRegistry();
+	      Circle circle = new Circle();
+	      circle.setId("1");
+	      registry.register(circle.getId(), circle, 64);
+	      Shape pooledShape = registry.getShape("1");
+	      System.out.println("Shape : " + pooledShape.getType() + ", not the prototype : " + (pooledShape != circle));
+
+	      //第一次启动走慢路径并写出快照，之后的启动直接映射快照
+	      Path snapshot = Files.createTempFile("shapes", ".snapshot");
+	      Files.delete(snapshot);
+	      System.out.println("Warm start : " + ShapeCache.loadCache(snapshot));
+	      System.out.println("Warm start : " + ShapeCache.loadCache(snapshot));
+	      //快照被截断时退回慢路径并重写
+	      byte[] bytes = Files.readAllBytes(snapshot);
+	      Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 1));
+	      System.out.println("Warm start : " + ShapeCache.loadCache(snapshot));
+	      System.out.println("Warm start : " + ShapeCache.loadCache(snapshot));
+	      Files.delete(snapshot);
+
+	      //十万个原型的快照，重启时只映射文件，用到哪个才实例化哪个
+	      List<Shape> prototypes = new ArrayList<>();
+	      for (int i = 0; i < 100000; i++) {
+	         Shape shape = i % 3 == 0 ? new Circle() : i % 3 == 1 ? new Square() : new Rectangle();
+	         shape.setId("shape-" + i);
+	         prototypes.add(shape);
+	      }
+	      Path bigSnapshot = Files.createTempFile("shapes", ".snapshot");
+	      PrototypeSnapshot.write(bigSnapshot, prototypes);
+
+	      long start = System.nanoTime();
+	      PrototypeSnapshot opened = PrototypeSnapshot.open(bigSnapshot);
+	      PrototypeRegistry restarted = new PrototypeRegistry();
+	      restarted.setLoader(opened::get);
+	      System.out.println("Snapshot opened : " + opened.size() + " prototypes, "
+	            + ((System.nanoTime() - start) < 100000000L ? "under 100ms" : "slow"));
+	      Shape restored = restarted.getShape("shape-42");
+	      System.out.println("Shape : " + restored.getType() + " " + restored.getId()
+	            + ", same prototype : " + (restarted.getPrototype("shape-42") == restarted.getPrototype("shape-42")));
+	      System.out.println("Missing : " + restarted.getShape("shape-100000"));
+	      System.out.println("Materialized : " + opened.getMaterializedCount());
+	      Files.delete(bigSnapshot);
 	}
 }
 
@@ -20,4 +70,14 @@ public class PrototypePatternDemo {
 Shape : Circle
 Shape : Square
 Shape : Rectangle
+Shape : Circle, not the prototype : true
+Warm start : false
+Warm start : true
+Ignoring damaged snapshot: prototype snapshot length 196 does not match its header
+Warm start : false
+Warm start : true
+Snapshot opened : 100000 prototypes, under 100ms
+Shape : Circle shape-42, same prototype : true
+Missing : null
+Materialized : 1
 */
@@ -0,0 +1,179 @@
+package com.lun.designpattern.prototype.example1;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 并发的原型注册表
+ *
+ * 查找原型只是一次ConcurrentHashMap.get，不加锁（Hashtable每次getShape都要抢同一把锁）。
+ * 可以为某个原型开启预克隆池：池中放着提前clone好的Shape，getShape直接从无锁队列中取走一个，
+ * 低于一半容量时由后台线程补满；池被取空时退化为当场clone。
+ *
+ * 重新注册同一个id会替换原型并丢弃旧的预克隆实例。
+ * 设置了loader时，未注册的id会交给loader按需加载并自动注册（例如从PrototypeSnapshot中物化）。
+ *
+ * @author JK
+ *
+ */
+public class PrototypeRegistry {
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ExecutorService refiller = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "prototype-refiller");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private volatile Function<String, ? extends Shape> loader;
+
+	private final LongAdder pooled = new LongAdder();
+	private final LongAdder cloned = new LongAdder();
+
+	public void register(String id, Shape prototype) {
+		register(id, prototype, 0);
+	}
+
+	/**
+	 * 注册原型，poolSize大于0时开启预克隆池并立即补满
+	 */
+	public void register(String id, Shape prototype, int poolSize) {
+		Entry entry = new Entry(id, prototype, poolSize);
+		entries.put(id, entry);
+		if (poolSize > 0) {
+			scheduleRefill(entry);
+		}
+	}
+
+	/**
+	 * 设置未注册id的加载器，加载器返回null表示没有这个原型
+	 */
+	public void setLoader(Function<String, ? extends Shape> loader) {
+		this.loader = loader;
+	}
+
+	public Shape getPrototype(String id) {
+		Entry entry = find(id);
+		return entry == null ? null : entry.prototype;
+	}
+
+	/**
+	 * 当前已注册的原型，不包括loader中尚未加载的
+	 */
+	public Collection<Shape> getPrototypes() {
+		List<Shape> prototypes = new ArrayList<>(entries.size());
+		for (Entry entry : entries.values()) {
+			prototypes.add(entry.prototype);
+		}
+		return prototypes;
+	}
+
+	private Entry find(String id) {
+		Entry entry = entries.get(id);
+		if (entry != null || loader == null) {
+			return entry;
+		}
+		Shape prototype = loader.apply(id);
+		if (prototype == null) {
+			return null;
+		}
+		entry = new Entry(id, prototype, 0);
+		Entry previous = entries.putIfAbsent(id, entry);
+		return previous == null ? entry : previous;
+	}
+
+	/**
+	 * 返回一个新的Shape，id未注册时返回null
+	 */
+	public Shape getShape(String id) {
+		Entry entry = find(id);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.capacity > 0) {
+			Shape shape = entry.pool.poll();
+			if (shape != null) {
+				pooled.increment();
+				if (entry.size.decrementAndGet() <= entry.capacity / 2) {
+					scheduleRefill(entry);
+				}
+				return shape;
+			}
+			scheduleRefill(entry);
+		}
+		cloned.increment();
+		return (Shape) entry.prototype.clone();
+	}
+
+	private void scheduleRefill(Entry entry) {
+		if (!entry.refilling.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			refiller.execute(() -> {
+				try {
+					while (entry.size.get() < entry.capacity && entries.get(entry.id) == entry) {
+						entry.pool.offer((Shape) entry.prototype.clone());
+						entry.size.incrementAndGet();
+					}
+				} finally {
+					entry.refilling.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			entry.refilling.set(false);
+		}
+	}
+
+	public int getPooledCount(String id) {
+		Entry entry = entries.get(id);
+		return entry == null ? 0 : entry.size.get();
+	}
+
+	/**
+	 * 从预克隆池取走的次数
+	 */
+	public long getPooledHits() {
+		return pooled.sum();
+	}
+
+	/**
+	 * 在调用线程上当场clone的次数
+	 */
+	public long getDirectClones() {
+		return cloned.sum();
+	}
+
+	/**
+	 * 停止后台补充，之后getShape仍然可用，只是池空后都会当场clone
+	 */
+	public void shutdown() {
+		refiller.shutdown();
+	}
+
+	private static final class Entry {
+		private final String id;
+		private final Shape prototype;
+		private final int capacity;
+		private final Queue<Shape> pool = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final AtomicBoolean refilling = new AtomicBoolean();
+
+		Entry(String id, Shape prototype, int capacity) {
+			this.id = id;
+			this.prototype = prototype;
+			this.capacity = capacity;
+		}
+	}
+}
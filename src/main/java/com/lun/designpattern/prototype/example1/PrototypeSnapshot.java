@@ -0,0 +1,308 @@
+package com.lun.designpattern.prototype.example1;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 原型注册表的二进制快照，用于跳过启动时的数据库加载
+ *
+ * 文件格式（大端）：
+ * <pre>
+ * header   : magic(int) version(int) count(int) idBytes(int)
+ * types    : 类型字典，count(int) + count个 [len(short) 类名utf8]
+ * records  : count条定长记录，按id的utf8字节升序排列，每条8字节
+ *            type(short) idLength(short) idOffset(int)
+ * ids      : 所有id的utf8字节，按idOffset寻址
+ * </pre>
+ *
+ * 写入时先完成全部校验，再写到同目录的临时文件并原子地替换目标文件，失败或崩溃不会留下半个快照。
+ * open时只解析头部和类型字典，并校验文件长度与头部记录的大小一致；get按id在映射区上二分查找，第一次访问某个id时才实例化它的原型，
+ * 之后返回同一个实例。原型通过无参构造函数创建，再恢复id，因此只适用于状态只有id的Shape子类。
+ *
+ * @author JK
+ *
+ */
+public class PrototypeSnapshot {
+
+	private static final int MAGIC = 0x53485053; // "SHPS"
+	private static final int VERSION = 2;
+	private static final int RECORD_SIZE = 8;
+	private static final int MAX_TYPES = 0xFFFF;
+
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private final String[] typeNames;
+	private final Constructor<?>[] constructors;
+	private final int recordsOffset;
+	private final int idsOffset;
+	private final AtomicReferenceArray<Shape> materialized;
+	private final AtomicInteger materializedCount = new AtomicInteger();
+
+	private PrototypeSnapshot(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+			throw new IllegalArgumentException("not a prototype snapshot file");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("unsupported prototype snapshot version: " + version);
+		}
+		this.size = buffer.getInt();
+		int idBytes = buffer.getInt();
+		try {
+			int typeCount = buffer.getInt();
+			if (size < 0 || idBytes < 0 || typeCount < 0 || typeCount > MAX_TYPES) {
+				throw new IllegalArgumentException("damaged prototype snapshot header");
+			}
+			this.typeNames = new String[typeCount];
+			for (int i = 0; i < typeNames.length; i++) {
+				byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(bytes);
+				typeNames[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("truncated prototype snapshot", e);
+		}
+		this.constructors = new Constructor<?>[typeNames.length];
+		this.recordsOffset = buffer.position();
+		this.idsOffset = recordsOffset + size * RECORD_SIZE;
+		if ((long) recordsOffset + (long) size * RECORD_SIZE + idBytes != buffer.capacity()) {
+			throw new IllegalArgumentException("prototype snapshot length " + buffer.capacity()
+					+ " does not match its header");
+		}
+		this.materialized = new AtomicReferenceArray<Shape>(size);
+	}
+
+	/**
+	 * 文件不是快照、版本不符或长度与头部不一致时抛出IllegalArgumentException
+	 */
+	public static PrototypeSnapshot open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			//映射建立后即使关闭channel也仍然有效
+			return new PrototypeSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * 将原型写成快照文件，id不能为null也不能重复
+	 */
+	public static void write(Path file, Collection<? extends Shape> prototypes) throws IOException {
+		List<String> typeNames = new ArrayList<String>();
+		Map<Class<?>, Integer> types = new HashMap<Class<?>, Integer>();
+		Record[] records = new Record[prototypes.size()];
+		int count = 0;
+		for (Shape prototype : prototypes) {
+			if (prototype.getId() == null) {
+				throw new IllegalArgumentException("prototype without id: " + prototype.getType());
+			}
+			Integer type = types.get(prototype.getClass());
+			if (type == null) {
+				if (typeNames.size() == MAX_TYPES) {
+					throw new IllegalArgumentException("too many prototype types, max " + MAX_TYPES);
+				}
+				type = typeNames.size();
+				types.put(prototype.getClass(), type);
+				typeNames.add(prototype.getClass().getName());
+			}
+			records[count++] = new Record(prototype.getId().getBytes(StandardCharsets.UTF_8), type);
+		}
+		Arrays.sort(records, 0, count, (a, b) -> compare(a.id, b.id));
+		for (int i = 1; i < count; i++) {
+			if (compare(records[i - 1].id, records[i].id) == 0) {
+				throw new IllegalArgumentException("duplicate prototype id: " + new String(records[i].id, StandardCharsets.UTF_8));
+			}
+		}
+
+		//写文件之前完成所有校验
+		long idBytes = 0;
+		for (int i = 0; i < count; i++) {
+			if (records[i].id.length > 0xFFFF) {
+				throw new IllegalArgumentException("id too long: " + new String(records[i].id, StandardCharsets.UTF_8));
+			}
+			idBytes += records[i].id.length;
+		}
+		//magic version count idBytes typeCount
+		long headerBytes = 20;
+		List<byte[]> typeNameBytes = new ArrayList<byte[]>(typeNames.size());
+		for (String typeName : typeNames) {
+			byte[] bytes = typeName.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > 0xFFFF) {
+				throw new IllegalArgumentException("type name too long: " + typeName);
+			}
+			typeNameBytes.add(bytes);
+			headerBytes += 2 + bytes.length;
+		}
+		if (headerBytes + (long) count * RECORD_SIZE + idBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("prototype snapshot larger than 2GB is not supported");
+		}
+
+		Path target = file.toAbsolutePath();
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream os = Files.newOutputStream(temp);
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(count);
+				out.writeInt((int) idBytes);
+				out.writeInt(typeNameBytes.size());
+				for (byte[] bytes : typeNameBytes) {
+					out.writeShort(bytes.length);
+					out.write(bytes);
+				}
+
+				int idOffset = 0;
+				for (int i = 0; i < count; i++) {
+					out.writeShort(records[i].type);
+					out.writeShort(records[i].id.length);
+					out.writeInt(idOffset);
+					idOffset += records[i].id.length;
+				}
+				for (int i = 0; i < count; i++) {
+					out.write(records[i].id);
+				}
+			}
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * utf8字节按无符号比较，与写入时的排序一致
+	 */
+	private static int compare(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 已经实例化的原型个数
+	 */
+	public int getMaterializedCount() {
+		return materializedCount.get();
+	}
+
+	/**
+	 * 返回id对应的原型，不存在时返回null；同一个id总是返回同一个实例
+	 */
+	public Shape get(String id) {
+		if (id == null) {
+			return null;
+		}
+		int row = find(id.getBytes(StandardCharsets.UTF_8));
+		if (row < 0) {
+			return null;
+		}
+		Shape prototype = materialized.get(row);
+		if (prototype != null) {
+			return prototype;
+		}
+		prototype = materialize(row, id);
+		if (materialized.compareAndSet(row, null, prototype)) {
+			materializedCount.incrementAndGet();
+			return prototype;
+		}
+		return materialized.get(row);
+	}
+
+	public boolean contains(String id) {
+		return id != null && find(id.getBytes(StandardCharsets.UTF_8)) >= 0;
+	}
+
+	/**
+	 * 在映射区上二分查找，只用绝对位置读取，可以被多个线程同时调用
+	 */
+	private int find(byte[] id) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareAt(mid, id);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private int compareAt(int row, byte[] id) {
+		int record = recordsOffset + row * RECORD_SIZE;
+		int length = buffer.getShort(record + 2) & 0xFFFF;
+		int offset = idsOffset + buffer.getInt(record + 4);
+		int common = Math.min(length, id.length);
+		for (int i = 0; i < common; i++) {
+			int diff = (buffer.get(offset + i) & 0xFF) - (id[i] & 0xFF);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return length - id.length;
+	}
+
+	private Shape materialize(int row, String id) {
+		int type = buffer.getShort(recordsOffset + row * RECORD_SIZE) & 0xFFFF;
+		try {
+			Shape prototype = (Shape) constructor(type).newInstance();
+			prototype.setId(id);
+			return prototype;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot materialize prototype " + id + " of type " + typeNames[type], e);
+		}
+	}
+
+	private Constructor<?> constructor(int type) throws ReflectiveOperationException {
+		Constructor<?> constructor = constructors[type];
+		if (constructor == null) {
+			Class<? extends Shape> shapeClass = Class.forName(typeNames[type]).asSubclass(Shape.class);
+			constructor = shapeClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			//重复解析无害，不需要同步
+			constructors[type] = constructor;
+		}
+		return constructor;
+	}
+
+	private static final class Record {
+		private final byte[] id;
+		private final int type;
+
+		Record(byte[] id, int type) {
+			this.id = id;
+			this.type = type;
+		}
+	}
+}
@@ -1,15 +1,20 @@
 package com.lun.designpattern.prototype.example1;
 
-import java.util.Hashtable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class ShapeCache {
     
-   private static Hashtable<String, Shape> shapeMap 
-      = new Hashtable<String, Shape>();
+   //原来是Hashtable，每次getShape都要抢同一把锁，现改为无锁查找的PrototypeRegistry
+   private static final PrototypeRegistry registry = new PrototypeRegistry();
 
    public static Shape getShape(String shapeId) {
-      Shape cachedShape = shapeMap.get(shapeId);
-      return (Shape) cachedShape.clone();
+      return registry.getShape(shapeId);
+   }
+
+   public static PrototypeRegistry getRegistry() {
+      return registry;
    }
 
    // 对每种形状都运行数据库查询，并创建该形状
@@ -18,14 +23,33 @@ public class ShapeCache {
    public static void loadCache() {
       Circle circle = new Circle();
       circle.setId("1");
-      shapeMap.put(circle.getId(),circle);
+      registry.register(circle.getId(),circle);
 
       Square square = new Square();
       square.setId("2");
-      shapeMap.put(square.getId(),square);
+      registry.register(square.getId(),square);
 
       Rectangle rectangle = new Rectangle();
       rectangle.setId("3");
-      shapeMap.put(rectangle.getId(),rectangle);
+      registry.register(rectangle.getId(),rectangle);
+   }
+
+   /**
+    * 快照存在时直接映射快照，原型在第一次被访问时才实例化；
+    * 否则（或快照已损坏）走loadCache的慢路径，并把结果重新写成快照供下次启动使用。
+    * 返回是否从快照启动
+    */
+   public static boolean loadCache(Path snapshot) throws IOException {
+      if (Files.exists(snapshot)) {
+         try {
+            registry.setLoader(PrototypeSnapshot.open(snapshot)::get);
+            return true;
+         } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring damaged snapshot: " + e.getMessage());
+         }
+      }
+      loadCache();
+      PrototypeSnapshot.write(snapshot, registry.getPrototypes());
+      return false;
    }
 }
@@ -1,5 +1,8 @@
 package com.lun.designpattern.prototype.example2;
 
+/**
+ * 用currentTimeMillis粗略计时，只用于演示；可信的对比见src/jmh下的ObjectCreationBenchmark
+ */
 public class CloneEfficiency {
 
     //new 对象
@@ -0,0 +1,92 @@
+package com.lun.designpattern.prototype.example2;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 写时复制的字段持有者
+ *
+ * share()只复制持有者本身，原型与克隆体指向同一个可变子对象；
+ * 任何一方第一次调用forWrite()时才复制出私有的一份，之后的写都作用在私有副本上。
+ * 从未被修改的克隆体始终不复制子对象，克隆的代价与子对象的大小无关。
+ *
+ * read()返回的对象可能被共享，调用方不能修改它。
+ *
+ * 持有者不是线程安全的：forWrite()、set()、share()都应在持有者所在的线程上调用，
+ * 并且share()之后不能再通过之前forWrite()返回的引用修改，否则克隆体会看到这些修改。
+ * 唯一的例外是不再被写的原型：在它最后一次写之后安全发布（例如放进ConcurrentHashMap），
+ * 之后多个线程可以同时从它share()。
+ *
+ * @author JK
+ *
+ */
+public final class CopyOnWrite<T> {
+
+	private final UnaryOperator<T> copier;
+	private T value;
+	//false表示value可能与其它持有者共享，写之前必须先复制
+	private volatile boolean owned;
+
+	/**
+	 * 默认用DeepCopier复制子对象
+	 */
+	public CopyOnWrite(T value) {
+		this(value, DeepCopier::copy);
+	}
+
+	public CopyOnWrite(T value, UnaryOperator<T> copier) {
+		this.value = value;
+		this.copier = copier;
+		this.owned = true;
+	}
+
+	private CopyOnWrite(CopyOnWrite<T> source) {
+		this.value = source.value;
+		this.copier = source.copier;
+		this.owned = false;
+	}
+
+	/**
+	 * 只读访问，不触发复制
+	 */
+	public T read() {
+		return value;
+	}
+
+	/**
+	 * 可写访问，第一次写时复制出私有副本
+	 *
+	 * 返回的引用只在下一次share()之前可以修改
+	 */
+	public T forWrite() {
+		if (!owned) {
+			value = value == null ? null : copier.apply(value);
+			owned = true;
+		}
+		return value;
+	}
+
+	/**
+	 * 整体替换，新值归当前持有者私有
+	 */
+	public void set(T value) {
+		this.value = value;
+		this.owned = true;
+	}
+
+	/**
+	 * 返回共享同一子对象的新持有者，O(1)
+	 *
+	 * 调用时不能有正在进行的写，见类注释
+	 */
+	public CopyOnWrite<T> share() {
+		owned = false;
+		return new CopyOnWrite<T>(this);
+	}
+
+	/**
+	 * 子对象是否可能仍与其它持有者共享
+	 */
+	public boolean isShared() {
+		return !owned;
+	}
+}
@@ -0,0 +1,142 @@
+package com.lun.designpattern.prototype.example2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 原型模式:写时复制的懒深克隆
+ *
+ * 与Sheep相同的原型，另外带一份可能很大的疫苗记录。clone只复制CopyOnWrite持有者，
+ * 生日与疫苗记录在原型和克隆体之间共享，直到某一方第一次修改时才复制出私有的一份，
+ * 所以只读的克隆体不占用额外内存，克隆的耗时也与记录的多少无关。
+ *
+ * getBirthday()返回的Date可能是共享的，不能直接修改；要修改请使用editBirthday()。
+ *
+ * @author JK
+ *
+ */
+public class CowSheep implements Cloneable {
+
+	private String sname;
+	private CopyOnWrite<Date> birthday;
+	private CopyOnWrite<List<String>> vaccinations;
+
+	public CowSheep(String sname, Date birthday) {
+		this.sname = sname;
+		this.birthday = new CopyOnWrite<Date>(birthday, date -> (Date) date.clone());
+		this.vaccinations = new CopyOnWrite<List<String>>(new ArrayList<String>(), ArrayList::new);
+	}
+
+	/**
+	 * 懒深克隆：可变的子对象只在第一次写时才复制
+	 */
+	@Override
+	public CowSheep clone() {
+		try {
+			CowSheep s = (CowSheep) super.clone();
+			s.birthday = birthday.share();
+			s.vaccinations = vaccinations.share();
+			return s;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public String getSname() {
+		return sname;
+	}
+
+	public void setSname(String sname) {
+		this.sname = sname;
+	}
+
+	/**
+	 * 只读，返回的Date可能被其它克隆体共享
+	 */
+	public Date getBirthday() {
+		return birthday.read();
+	}
+
+	/**
+	 * 返回可以修改的私有Date
+	 */
+	public Date editBirthday() {
+		return birthday.forWrite();
+	}
+
+	public void setBirthday(Date birthday) {
+		this.birthday.set(birthday);
+	}
+
+	public List<String> getVaccinations() {
+		return Collections.unmodifiableList(vaccinations.read());
+	}
+
+	public void addVaccination(String vaccination) {
+		vaccinations.forWrite().add(vaccination);
+	}
+
+	/**
+	 * 是否还与原型共享子对象
+	 */
+	public boolean isShared() {
+		return birthday.isShared() || vaccinations.isShared();
+	}
+
+	/**
+	 * 测试写时复制的原型
+	 */
+	public static void main(String[] args) {
+		CowSheep prototype = new CowSheep("原型羊", new Date(1274397294739L));
+		for (int i = 0; i < 100000; i++) {
+			prototype.addVaccination("疫苗" + i);
+		}
+
+		CowSheep s1 = prototype.clone();
+		CowSheep s2 = prototype.clone();
+		System.out.println("克隆后共享生日：" + (s1.getBirthday() == prototype.getBirthday()));
+		System.out.println("克隆后共享疫苗记录：" + s1.isShared() + " " + s1.getVaccinations().size());
+
+		s1.editBirthday().setTime(34732834827389L);
+		s1.addVaccination("狂犬疫苗");
+		System.out.println("修改后s1共享生日：" + (s1.getBirthday() == prototype.getBirthday()));
+		System.out.println("原型生日不变：" + (prototype.getBirthday().getTime() == 1274397294739L));
+		System.out.println("s1疫苗记录：" + s1.getVaccinations().size() + "，原型：" + prototype.getVaccinations().size());
+		System.out.println("s2仍然共享：" + s2.isShared());
+
+		//原型被克隆后自己再写，同样先复制，不影响已有的克隆体
+		prototype.addVaccination("蓝舌病疫苗");
+		System.out.println("原型写后s2疫苗记录：" + s2.getVaccinations().size());
+
+		int size = 1000000;
+		for (int round = 0; round < 2; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < size; i++) {
+				prototype.clone();
+			}
+			System.out.println("写时复制克隆耗时：" + (System.nanoTime() - start) / size + "ns/次");
+
+			start = System.nanoTime();
+			for (int i = 0; i < 1000; i++) {
+				DeepCopier.copy(prototype);
+			}
+			System.out.println("DeepCopier 深复制耗时：" + (System.nanoTime() - start) / 1000 + "ns/次");
+		}
+	}
+}
+
+/*
+克隆后共享生日：true
+克隆后共享疫苗记录：true 100000
+修改后s1共享生日：false
+原型生日不变：true
+s1疫苗记录：100001，原型：100000
+s2仍然共享：true
+原型写后s2疫苗记录：100000
+写时复制克隆耗时：128ns/次
+DeepCopier 深复制耗时：2242089ns/次
+写时复制克隆耗时：139ns/次
+DeepCopier 深复制耗时：2019862ns/次
+*/
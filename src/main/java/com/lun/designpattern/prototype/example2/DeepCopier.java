@@ -0,0 +1,278 @@
+package com.lun.designpattern.prototype.example2;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * 基于反射的深复制引擎，用来代替序列化/反序列化的深克隆
+ *
+ * 每个类第一次复制时生成一份复制计划（字段的MethodHandle读写器与实例化方式）并缓存在ClassValue中，
+ * 之后复制只是逐字段读写。
+ * String、包装类型、枚举、java.time等不可变类型直接共享引用；Date等可变的JDK类型单独处理；
+ * 通过IdentityHashMap记录已复制的对象，循环引用与共享引用在副本中保持相同的结构。
+ *
+ * 基本类型字段由一个 getter→setter 直接组合的MethodHandle复制，不经过Object，不会装箱。
+ *
+ * 普通类有无参构造函数（可以是private的）时用它创建实例，再逐字段覆盖；
+ * 没有时退回到sun.misc.Unsafe.allocateInstance，不调用任何构造函数，因此原型类不需要为复制做任何改动。
+ * 只有当前JVM不提供Unsafe且类没有无参构造函数时，以及不在支持列表中的其它JDK类型（java.*、javax.*），
+ * 才会抛出IllegalArgumentException。
+ *
+ * @author JK
+ *
+ */
+public class DeepCopier {
+
+	private static final ClassValue<Copier> PLANS = new ClassValue<Copier>() {
+		@Override
+		protected Copier computeValue(Class<?> type) {
+			return plan(type);
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	public static <T> T copy(T source) {
+		return (T) copy(source, new IdentityHashMap<Object, Object>());
+	}
+
+	private static Object copy(Object source, IdentityHashMap<Object, Object> copies) {
+		if (source == null) {
+			return null;
+		}
+		Object copied = copies.get(source);
+		if (copied != null) {
+			return copied;
+		}
+		return PLANS.get(source.getClass()).copy(source, copies);
+	}
+
+	private interface Copier {
+		Object copy(Object source, IdentityHashMap<Object, Object> copies);
+	}
+
+	private static final Copier SHARED = (source, copies) -> source;
+
+	//(Class)Object，当前JVM不提供sun.misc.Unsafe时为null
+	private static final MethodHandle ALLOCATE_INSTANCE = allocator();
+
+	private static MethodHandle allocator() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return MethodHandles.lookup()
+					.findVirtual(unsafeClass, "allocateInstance", MethodType.methodType(Object.class, Class.class))
+					.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static Copier plan(Class<?> type) {
+		if (isImmutable(type)) {
+			return SHARED;
+		}
+		if (type.isSynthetic() && type.getName().contains("$$Lambda")) {
+			//lambda是行为而不是数据，而且无法通过反射实例化，直接共享
+			return SHARED;
+		}
+		if (type.isArray()) {
+			return type.getComponentType().isPrimitive() ? DeepCopier::copyPrimitiveArray : DeepCopier::copyObjectArray;
+		}
+		if (Date.class.isAssignableFrom(type)) {
+			//java.sql.Date/Timestamp等子类的clone同样是public的
+			return (source, copies) -> remember(source, ((Date) source).clone(), copies);
+		}
+		if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class || type == LinkedHashSet.class) {
+			return DeepCopier::copyCollection;
+		}
+		if (type == HashMap.class || type == LinkedHashMap.class || type == TreeMap.class) {
+			return DeepCopier::copyMap;
+		}
+		String name = type.getName();
+		if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.")) {
+			throw new IllegalArgumentException("unsupported JDK type: " + name);
+		}
+		return new ObjectCopier(type);
+	}
+
+	private static boolean isImmutable(Class<?> type) {
+		return type == String.class || type == Boolean.class || type == Character.class || type == Byte.class
+				|| type == Short.class || type == Integer.class || type == Long.class || type == Float.class
+				|| type == Double.class || type == BigInteger.class || type == BigDecimal.class || type == UUID.class
+				|| type == Locale.class || type == Class.class || type == Object.class || type.isEnum()
+				|| (type.getSuperclass() != null && type.getSuperclass().isEnum())
+				|| (type.getPackage() != null && type.getPackage().getName().equals("java.time"));
+	}
+
+	private static Object remember(Object source, Object copy, IdentityHashMap<Object, Object> copies) {
+		copies.put(source, copy);
+		return copy;
+	}
+
+	private static Object copyPrimitiveArray(Object source, IdentityHashMap<Object, Object> copies) {
+		int length = Array.getLength(source);
+		Object copy = Array.newInstance(source.getClass().getComponentType(), length);
+		System.arraycopy(source, 0, copy, 0, length);
+		return remember(source, copy, copies);
+	}
+
+	private static Object copyObjectArray(Object source, IdentityHashMap<Object, Object> copies) {
+		Object[] array = (Object[]) source;
+		Object[] copy = (Object[]) Array.newInstance(source.getClass().getComponentType(), array.length);
+		remember(source, copy, copies);
+		for (int i = 0; i < array.length; i++) {
+			copy[i] = copy(array[i], copies);
+		}
+		return copy;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object copyCollection(Object source, IdentityHashMap<Object, Object> copies) {
+		Collection<Object> collection = (Collection<Object>) source;
+		Collection<Object> copy;
+		if (source instanceof ArrayList) {
+			copy = new ArrayList<Object>(collection.size());
+		} else if (source instanceof LinkedList) {
+			copy = new LinkedList<Object>();
+		} else if (source instanceof LinkedHashSet) {
+			copy = new LinkedHashSet<Object>(collection.size() * 4 / 3 + 1);
+		} else {
+			copy = new HashSet<Object>(collection.size() * 4 / 3 + 1);
+		}
+		remember(source, copy, copies);
+		for (Object element : collection) {
+			copy.add(copy(element, copies));
+		}
+		return copy;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object copyMap(Object source, IdentityHashMap<Object, Object> copies) {
+		Map<Object, Object> map = (Map<Object, Object>) source;
+		Map<Object, Object> copy;
+		if (source instanceof TreeMap) {
+			copy = new TreeMap<Object, Object>(((TreeMap<Object, Object>) source).comparator());
+		} else if (source instanceof LinkedHashMap) {
+			copy = new LinkedHashMap<Object, Object>(map.size() * 4 / 3 + 1);
+		} else {
+			copy = new HashMap<Object, Object>(map.size() * 4 / 3 + 1);
+		}
+		remember(source, copy, copies);
+		for (Map.Entry<Object, Object> e : map.entrySet()) {
+			copy.put(copy(e.getKey(), copies), copy(e.getValue(), copies));
+		}
+		return copy;
+	}
+
+	/**
+	 * 普通类的复制计划：创建实例，基本类型字段直接复制，引用字段递归深复制
+	 */
+	private static final class ObjectCopier implements Copier {
+
+		private static final MethodType INSTANTIATE = MethodType.methodType(Object.class);
+		private static final MethodType COPY_FIELD = MethodType.methodType(void.class, Object.class, Object.class);
+		private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+		//()Object
+		private final MethodHandle instantiate;
+		//(Object copy, Object source)void，只适配了接收者类型，字段值保持基本类型
+		private final MethodHandle[] primitiveFields;
+		private final MethodHandle[] getters;
+		//(Object copy, Object value)void
+		private final MethodHandle[] setters;
+
+		ObjectCopier(Class<?> type) {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			List<MethodHandle> primitiveFields = new ArrayList<MethodHandle>();
+			List<MethodHandle> getters = new ArrayList<MethodHandle>();
+			List<MethodHandle> setters = new ArrayList<MethodHandle>();
+			try {
+				this.instantiate = instantiator(lookup, type);
+				for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						if (Modifier.isStatic(field.getModifiers())) {
+							continue;
+						}
+						field.setAccessible(true);
+						MethodHandle getter = lookup.unreflectGetter(field);
+						MethodHandle setter = lookup.unreflectSetter(field);
+						if (field.getType().isPrimitive()) {
+							//(copy, source) -> setter(copy, getter(source))
+							primitiveFields.add(MethodHandles.filterArguments(setter, 1, getter).asType(COPY_FIELD));
+						} else {
+							getters.add(getter.asType(GETTER));
+							setters.add(setter.asType(COPY_FIELD));
+						}
+					}
+				}
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				throw new IllegalArgumentException("cannot build copy plan for " + type.getName(), e);
+			}
+			this.primitiveFields = primitiveFields.toArray(new MethodHandle[0]);
+			this.getters = getters.toArray(new MethodHandle[0]);
+			this.setters = setters.toArray(new MethodHandle[0]);
+		}
+
+		/**
+		 * 优先用无参构造函数（字段初始化的结果随后会被逐字段覆盖），没有时不经构造函数分配实例
+		 */
+		private static MethodHandle instantiator(MethodHandles.Lookup lookup, Class<?> type)
+				throws IllegalAccessException {
+			if (Modifier.isAbstract(type.getModifiers())) {
+				throw new IllegalArgumentException("cannot instantiate abstract type: " + type.getName());
+			}
+			try {
+				Constructor<?> constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return lookup.unreflectConstructor(constructor).asType(INSTANTIATE);
+			} catch (NoSuchMethodException e) {
+				if (ALLOCATE_INSTANCE == null) {
+					throw new IllegalArgumentException(type.getName() + " has no no-arg constructor", e);
+				}
+				return ALLOCATE_INSTANCE.bindTo(type);
+			}
+		}
+
+		@Override
+		public Object copy(Object source, IdentityHashMap<Object, Object> copies) {
+			try {
+				Object copy = (Object) instantiate.invokeExact();
+				copies.put(source, copy);
+				for (MethodHandle field : primitiveFields) {
+					field.invokeExact(copy, source);
+				}
+				for (int i = 0; i < getters.length; i++) {
+					Object value = (Object) getters[i].invokeExact(source);
+					setters[i].invokeExact(copy, DeepCopier.copy(value, copies));
+				}
+				return copy;
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
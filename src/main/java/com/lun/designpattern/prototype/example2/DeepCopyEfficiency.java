@@ -0,0 +1,75 @@
+package com.lun.designpattern.prototype.example2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+/**
+ * 深复制效率对比：序列化/反序列化 vs DeepCopier vs 手写的Sheep.clone
+ */
+public class DeepCopyEfficiency {
+
+    //序列化 深复制
+    public static Sheep serializationCopy(Sheep sheep) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(sheep);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        return (Sheep) ois.readObject();
+    }
+
+    public static void testSerialization(Sheep sheep, int size) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            serializationCopy(sheep);
+        }
+        long end = System.nanoTime();
+        System.out.println("序列化 深复制耗时：" + (end - start) / size + "ns/次");
+    }
+
+    public static void testDeepCopier(Sheep sheep, int size) {
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            DeepCopier.copy(sheep);
+        }
+        long end = System.nanoTime();
+        System.out.println("DeepCopier 深复制耗时：" + (end - start) / size + "ns/次");
+    }
+
+    public static void testClone(Sheep sheep, int size) throws CloneNotSupportedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            sheep.clone();
+        }
+        long end = System.nanoTime();
+        System.out.println("手写clone 深复制耗时：" + (end - start) / size + "ns/次");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Date date = new Date(1274397294739L);
+        Sheep s1 = new Sheep("原型羊", date);
+
+        Sheep s2 = DeepCopier.copy(s1);
+        date.setTime(34732834827389L);//改变原有date的值
+        System.out.println("克隆羊：" + s2.getSname() + " " + (s2.getBirthday() != s1.getBirthday()));
+
+        //预热，让JIT编译完成
+        for (int round = 0; round < 2; round++) {
+            testSerialization(s1, 100000);
+            testDeepCopier(s1, 1000000);
+            testClone(s1, 1000000);
+        }
+    }
+}
+
+/*
+克隆羊：原型羊 true
+序列化 深复制耗时：33606ns/次
+DeepCopier 深复制耗时：603ns/次
+手写clone 深复制耗时：144ns/次
+序列化 深复制耗时：10350ns/次
+DeepCopier 深复制耗时：127ns/次
+手写clone 深复制耗时：38ns/次
+*/
@@ -20,6 +20,13 @@ public class Sheep implements Cloneable,Serializable{
 		this.birthday = date;
 		this.sname = string;
 	}
+
+    /**
+     * 拷贝构造函数，另一种深复制方式
+     */
+    public Sheep(Sheep other) {
+		this(other.sname, (Date) other.birthday.clone());
+	}
 	/**
 	 * 
 	 * 浅克隆
@@ -32,6 +39,13 @@ public class Sheep implements Cloneable,Serializable{
 //        return obj;
 //    }
 
+    /**
+     * 浅克隆：birthday与原型共享，用作clone()开销的基线
+     */
+    public Sheep shallowClone() throws CloneNotSupportedException {
+        return (Sheep) super.clone();
+    }
+
     /**
      * 
      * 深克隆
@@ -0,0 +1,97 @@
+package com.lun.designpattern.proxy.example1;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可以提前异步加载的虚拟代理
+ *
+ * prefetch()在executor上开始加载RealImage并立即返回；无论多少个线程同时调用prefetch()或display()，
+ * 同一个代理只加载一次（single-flight），其余调用者等待同一个加载结果。
+ * display()时如果还没有开始加载，就在调用线程上直接加载，不占用executor。
+ * 加载失败后下一次调用会重新加载。
+ * executor拒绝任务时prefetch()返回的future以RejectedExecutionException失败，调用方可以稍后重试；
+ * 等在这次预取上的display()会改为在自己的线程上加载，prefetch()本身不会阻塞。
+ *
+ * @author JK
+ *
+ */
+public class AsyncProxyImage implements Image {
+
+	private final String fileName;
+	private final Executor executor;
+	private final AtomicReference<CompletableFuture<RealImage>> loading = new AtomicReference<>();
+
+	public AsyncProxyImage(String fileName, Executor executor) {
+		this.fileName = fileName;
+		this.executor = executor;
+	}
+
+	/**
+	 * 在executor上开始加载，已经在加载或已加载时直接返回同一个future
+	 */
+	public CompletableFuture<RealImage> prefetch() {
+		return start(true);
+	}
+
+	@Override
+	public void display() {
+		while (true) {
+			try {
+				start(false).join().display();
+				return;
+			} catch (CompletionException e) {
+				//预取被executor拒绝，并不是加载失败，重新开始一次同步加载
+				if (!(e.getCause() instanceof RejectedExecutionException)) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private CompletableFuture<RealImage> start(boolean async) {
+		while (true) {
+			CompletableFuture<RealImage> future = loading.get();
+			if (future != null) {
+				return future;
+			}
+			CompletableFuture<RealImage> created = new CompletableFuture<>();
+			if (loading.compareAndSet(null, created)) {
+				if (!async) {
+					load(created);
+					return created;
+				}
+				try {
+					executor.execute(() -> load(created));
+				} catch (RuntimeException e) {
+					//executor拒绝时不在调用线程上阻塞加载：清掉这次预取，让下一次调用重新开始
+					loading.compareAndSet(created, null);
+					created.completeExceptionally(e instanceof RejectedExecutionException ? e
+							: new RejectedExecutionException(e));
+				}
+				return created;
+			}
+		}
+	}
+
+	private void load(CompletableFuture<RealImage> future) {
+		try {
+			future.complete(new RealImage(fileName));
+		} catch (Throwable e) {
+			loading.compareAndSet(future, null);
+			future.completeExceptionally(e);
+		}
+	}
+
+	public boolean isLoaded() {
+		CompletableFuture<RealImage> future = loading.get();
+		return future != null && future.isDone() && !future.isCompletedExceptionally();
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+}
@@ -0,0 +1,220 @@
+package com.lun.designpattern.proxy.example1;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 进程内共享的图片缓存，按文件名缓存RealImage
+ *
+ * 容量按RealImage占用的字节数计算而不是按条目数，超出预算时按LRU淘汰。
+ * 同一个文件的并发加载只进行一次。被淘汰的条目会清空它持有的RealImage，
+ * 持有该条目的ProxyImage下次display时发现图片已被释放，会重新从缓存获取（必要时重新加载）。
+ *
+ * 单张图片超过整个预算时仍会被缓存，直到下一次加载时被淘汰。
+ *
+ * @author JK
+ *
+ */
+public class ImageCache {
+
+	private static final ImageCache SHARED = new ImageCache(Long.getLong("proxy.imageCache.maxBytes", 64L << 20));
+
+	private final long maxBytes;
+	private final Function<String, RealImage> loader;
+
+	private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(16, 0.75f, true);
+	private final ConcurrentHashMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+	private long bytesResident;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public ImageCache(long maxBytes) {
+		this(maxBytes, RealImage::new);
+	}
+
+	public ImageCache(long maxBytes, Function<String, RealImage> loader) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		this.loader = loader;
+	}
+
+	/**
+	 * 进程内共享的缓存，预算由系统属性proxy.imageCache.maxBytes指定，默认64MB
+	 */
+	public static ImageCache shared() {
+		return SHARED;
+	}
+
+	public RealImage get(String fileName) {
+		while (true) {
+			Entry entry = acquire(fileName);
+			RealImage image = entry.image;
+			if (image != null) {
+				return image;
+			}
+		}
+	}
+
+	/**
+	 * 返回文件对应的缓存条目，不在缓存中时加载；返回的条目可能随时被淘汰
+	 */
+	Entry acquire(String fileName) {
+		Entry cached = lookup(fileName);
+		if (cached != null) {
+			return cached;
+		}
+		CompletableFuture<Entry> created = new CompletableFuture<>();
+		CompletableFuture<Entry> pending = loading.putIfAbsent(fileName, created);
+		if (pending != null) {
+			misses.increment();
+			try {
+				return pending.join();
+			} catch (CompletionException e) {
+				//与执行加载的线程抛出同样的异常
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+		try {
+			//上一次加载可能在第一次查找之后、putIfAbsent之前刚刚完成
+			cached = lookup(fileName);
+			if (cached != null) {
+				created.complete(cached);
+				return cached;
+			}
+			misses.increment();
+			Entry entry = new Entry(fileName, loader.apply(fileName));
+			admit(entry);
+			created.complete(entry);
+			return entry;
+		} catch (RuntimeException | Error e) {
+			created.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(fileName, created);
+		}
+	}
+
+	private Entry lookup(String fileName) {
+		synchronized (lru) {
+			Entry entry = lru.get(fileName);
+			if (entry != null) {
+				hits.increment();
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * 已持有条目的代理再次访问时调用，更新LRU顺序；条目已被淘汰时返回false
+	 */
+	boolean touch(Entry entry) {
+		synchronized (lru) {
+			if (entry.image == null) {
+				return false;
+			}
+			lru.get(entry.fileName);
+		}
+		hits.increment();
+		return true;
+	}
+
+	private void admit(Entry entry) {
+		synchronized (lru) {
+			Entry previous = lru.put(entry.fileName, entry);
+			if (previous != null) {
+				bytesResident -= previous.size;
+				previous.image = null;
+			}
+			bytesResident += entry.size;
+			Iterator<Entry> eldest = lru.values().iterator();
+			while (bytesResident > maxBytes && eldest.hasNext()) {
+				Entry victim = eldest.next();
+				if (victim == entry) {
+					break;
+				}
+				eldest.remove();
+				bytesResident -= victim.size;
+				victim.image = null;
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * 清空缓存，已持有条目的代理会在下次display时重新加载
+	 */
+	public void clear() {
+		synchronized (lru) {
+			for (Entry entry : lru.values()) {
+				entry.image = null;
+			}
+			lru.clear();
+			bytesResident = 0;
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getBytesResident() {
+		synchronized (lru) {
+			return bytesResident;
+		}
+	}
+
+	public int size() {
+		synchronized (lru) {
+			return lru.size();
+		}
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public double getHitRatio() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageCache [size=" + size() + ", bytesResident=" + getBytesResident() + "/" + maxBytes + ", hits="
+				+ hits.sum() + ", misses=" + misses.sum() + ", evictions=" + getEvictions() + "]";
+	}
+
+	static final class Entry {
+		private final String fileName;
+		private final long size;
+		//被淘汰时置为null，释放图片占用的内存
+		private volatile RealImage image;
+
+		Entry(String fileName, RealImage image) {
+			this.fileName = fileName;
+			this.image = image;
+			this.size = image.getSizeInBytes();
+		}
+
+		RealImage getImage() {
+			return image;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.lun.designpattern.proxy.example1;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量预取图片
+ *
+ * 同一个文件名总是对应同一个AsyncProxyImage，所以并发预取同一个文件也只加载一次。
+ * 加载在固定大小的线程池上进行，同时进行的加载数不超过parallelism。
+ *
+ * @author JK
+ *
+ */
+public class ImagePrefetcher {
+
+	private final ConcurrentHashMap<String, AsyncProxyImage> images = new ConcurrentHashMap<>();
+	private final ExecutorService executor;
+
+	public ImagePrefetcher(int parallelism) {
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread thread = new Thread(r, "image-loader-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * 返回文件对应的代理，不开始加载
+	 */
+	public AsyncProxyImage getImage(String fileName) {
+		return images.computeIfAbsent(fileName, name -> new AsyncProxyImage(name, executor));
+	}
+
+	/**
+	 * 开始并发加载这些文件，立即返回对应的代理
+	 */
+	public List<AsyncProxyImage> prefetch(Collection<String> fileNames) {
+		List<AsyncProxyImage> result = new ArrayList<>(fileNames.size());
+		for (String fileName : fileNames) {
+			AsyncProxyImage image = getImage(fileName);
+			image.prefetch();
+			result.add(image);
+		}
+		return result;
+	}
+
+	/**
+	 * 所有代理都加载完成时完成
+	 */
+	public static CompletableFuture<Void> allLoaded(Collection<AsyncProxyImage> images) {
+		List<CompletableFuture<RealImage>> futures = new ArrayList<>(images.size());
+		for (AsyncProxyImage image : images) {
+			futures.add(image.prefetch());
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
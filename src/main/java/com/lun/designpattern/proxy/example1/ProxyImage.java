@@ -2,11 +2,18 @@ package com.lun.designpattern.proxy.example1;
 
 public class ProxyImage implements Image {
 
-	private RealImage realImage;
+	//RealImage由共享的ImageCache持有，缓存淘汰后这里的条目会失效，下次display时重新获取
+	private volatile ImageCache.Entry entry;
 	private String fileName;
+	private ImageCache cache;
 
 	public ProxyImage(String fileName) {
+		this(fileName, ImageCache.shared());
+	}
+
+	public ProxyImage(String fileName, ImageCache cache) {
 		this.fileName = fileName;
+		this.cache = cache;
 	}
 
 	@Override
@@ -14,15 +21,29 @@ public class ProxyImage implements Image {
 		
 		long begin = System.currentTimeMillis();
 		
-		if (realImage == null) {
-			realImage = new RealImage(fileName);
-		}
-		
-		realImage.display();
+		realImage().display();
 		
 		long end = System.currentTimeMillis();
 		
 		System.out.println("It's spent " + (end - begin)+ "ms");
 		
 	}
+
+	private RealImage realImage() {
+		ImageCache.Entry current = entry;
+		if (current != null) {
+			RealImage image = current.getImage();
+			if (image != null && cache.touch(current)) {
+				return image;
+			}
+		}
+		while (true) {
+			current = cache.acquire(fileName);
+			RealImage image = current.getImage();
+			if (image != null) {
+				entry = current;
+				return image;
+			}
+		}
+	}
 }
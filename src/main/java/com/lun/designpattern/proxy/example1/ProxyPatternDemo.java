@@ -1,10 +1,101 @@
 package com.lun.designpattern.proxy.example1;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 public class ProxyPatternDemo {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException {
 		Image image = new ProxyImage("18stop.jpg");
 
 		image.display();
+		image.display();
+
+		//提前在后台加载，display时等待同一个加载结果
+		ImagePrefetcher prefetcher = new ImagePrefetcher(4);
+		AsyncProxyImage async = prefetcher.getImage("19stop.jpg");
+		async.prefetch();
+		Thread.sleep(500);//加载的同时做其它事情
+		long begin = System.currentTimeMillis();
+		async.display();
+		System.out.println("Waited less than a full load : " + (System.currentTimeMillis() - begin < 666));
+
+		//多个线程同时display同一个代理，只加载一次
+		AsyncProxyImage shared = prefetcher.getImage("20stop.jpg");
+		CountDownLatch done = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			new Thread(() -> {
+				shared.display();
+				done.countDown();
+			}).start();
+		}
+		done.await();
+
+		//批量预取：8张图片在4个线程上并发加载，大约2×666ms
+		List<String> fileNames = Arrays.asList("a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg", "f.jpg", "g.jpg", "h.jpg");
+		begin = System.currentTimeMillis();
+		List<AsyncProxyImage> images = prefetcher.prefetch(fileNames);
+		ImagePrefetcher.allLoaded(images).join();
+		long spent = System.currentTimeMillis() - begin;
+		System.out.println("Batch loaded " + images.size() + " images concurrently : " + (spent < 8 * 666));
+		prefetcher.shutdown();
+
+		//共享缓存：两个代理指向同一个文件只加载一次；预算3MB，超出时按LRU淘汰，
+		//被淘汰的代理下次display时重新加载
+		ImageCache cache = new ImageCache(3 * RealImage.DEFAULT_SIZE);
+		Image p1 = new ProxyImage("1.jpg", cache);
+		Image p1Again = new ProxyImage("1.jpg", cache);
+		p1.display();
+		p1Again.display();
+		new ProxyImage("2.jpg", cache).display();
+		new ProxyImage("3.jpg", cache).display();
+		new ProxyImage("4.jpg", cache).display();
+		p1.display();
+		System.out.println(cache);
+		System.out.println("Hit ratio : " + cache.getHitRatio() + ", bytes resident : " + cache.getBytesResident());
 	}
 }
+
+/*
+Loading 18stop.jpg
+Displaying 18stop.jpg
+It's spent 667ms
+Displaying 18stop.jpg
+It's spent 0ms
+Loading 19stop.jpg
+Displaying 19stop.jpg
+Waited less than a full load : true
+Loading 20stop.jpg
+Displaying 20stop.jpg
+Displaying 20stop.jpg
+Displaying 20stop.jpg
+Loading a.jpg
+Loading b.jpg
+Loading c.jpg
+Loading d.jpg
+Loading e.jpg
+Loading h.jpg
+Loading g.jpg
+Loading f.jpg
+Batch loaded 8 images concurrently : true
+Loading 1.jpg
+Displaying 1.jpg
+It's spent 667ms
+Displaying 1.jpg
+It's spent 0ms
+Loading 2.jpg
+Displaying 2.jpg
+It's spent 667ms
+Loading 3.jpg
+Displaying 3.jpg
+It's spent 668ms
+Loading 4.jpg
+Displaying 4.jpg
+It's spent 669ms
+Loading 1.jpg
+Displaying 1.jpg
+It's spent 667ms
+ImageCache [size=3, bytesResident=3145728/3145728, hits=1, misses=5, evictions=2]
+Hit ratio : 0.16666666666666666, bytes resident : 3145728
+*/
@@ -2,22 +2,44 @@ package com.lun.designpattern.proxy.example1;
 
 public class RealImage implements Image {
 
+	//解码后的大小，默认按1MB估算
+	public static final int DEFAULT_SIZE = 1 << 20;
+
 	private String fileName;
+	private byte[] pixels;
 
 	public RealImage(String fileName) {
+		this(fileName, DEFAULT_SIZE);
+	}
+
+	public RealImage(String fileName, int sizeInBytes) {
 		this.fileName = fileName;
+		this.pixels = new byte[sizeInBytes];
+		loadFromDisk();
 	}
 
-	@Override
-	public void display() {
-		System.out.println("Displaying " + fileName);
+	//模拟从磁盘/网络读取图片的耗时
+	private void loadFromDisk() {
+		System.out.println("Loading " + fileName);
 		
 		try {
 			Thread.sleep(666);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
-		
+	}
+
+	@Override
+	public void display() {
+		System.out.println("Displaying " + fileName);
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public int getSizeInBytes() {
+		return pixels.length;
 	}
 
 }
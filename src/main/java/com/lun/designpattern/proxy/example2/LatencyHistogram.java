@@ -0,0 +1,149 @@
+package com.lun.designpattern.proxy.example2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 记录纳秒耗时的对数-线性直方图
+ *
+ * 小于32ns的值各占一个桶；更大的值按2的幂分段，每段再线性分成32个桶，相对误差不超过1/32。
+ * 桶的个数固定（1888个），record只做几次原子自增，不分配对象，可以放在每次调用的热路径上。
+ * 多个线程可以同时record；snapshot与record并发时得到的是近似一致的结果。
+ *
+ * @author JK
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	//long的最高有效位最大为62
+	private static final int BUCKETS = SUB_BUCKETS + (62 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(indexOf(nanos));
+		long current = max.get();
+		while (nanos > current && !max.compareAndSet(current, nanos)) {
+			current = max.get();
+		}
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * 桶中能放入的最大值
+	 */
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * 累计至今的快照
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy, max.get());
+	}
+
+	/**
+	 * 取快照并清零，用于按周期导出每个区间内的分布
+	 */
+	public Snapshot snapshotAndReset() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.getAndSet(i, 0);
+		}
+		return new Snapshot(copy, max.getAndSet(0));
+	}
+
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long max;
+		private final double mean;
+
+		private Snapshot(long[] counts, long max) {
+			this.counts = counts;
+			long count = 0;
+			double sum = 0;
+			for (int i = 0; i < counts.length; i++) {
+				count += counts[i];
+				sum += (double) counts[i] * upperBoundOf(i);
+			}
+			this.count = count;
+			this.max = max;
+			this.mean = count == 0 ? 0 : sum / count;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * 平均值按各桶的上界估算
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * 返回第quantile分位（0到1之间）所在桶的上界，不超过max
+		 */
+		public long getValueAtQuantile(double quantile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(upperBoundOf(i), max);
+				}
+			}
+			return max;
+		}
+
+		public long getP50() {
+			return getValueAtQuantile(0.5);
+		}
+
+		public long getP99() {
+			return getValueAtQuantile(0.99);
+		}
+
+		public long getP999() {
+			return getValueAtQuantile(0.999);
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + ", mean=" + Math.round(mean) + "ns, p50=" + getP50() + "ns, p99=" + getP99()
+					+ "ns, p999=" + getP999() + "ns, max=" + max + "ns";
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package com.lun.designpattern.proxy.example2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lun.designpattern.proxy.example1.Image;
+
+/**
+ * 不经过反射的接口代理工厂
+ *
+ * JDK动态代理每次调用都要把参数装箱成Object[]，再经过InvocationHandler和Method.invoke，JIT无法内联。
+ * 这里在创建代理时为接口的每个方法准备好一个MethodHandle（绑定了target，并由拦截器用MethodHandles组合子包装），
+ * 然后运行时生成一个实现该接口的类，每个方法只是对一个static final MethodHandle的invokeExact调用。
+ * static final字段被JIT当作常量，整条调用链可以内联，参数不装箱。
+ *
+ * 每个代理实例对应一个生成的类，创建代价比JDK动态代理高，适合启动时包装一次、之后长期使用的服务。
+ * 接口必须是public的；equals/hashCode/toString不转发给target。
+ *
+ * @author JK
+ *
+ */
+public final class MethodHandleProxyFactory {
+
+	/**
+	 * 拦截器在创建代理时对每个方法调用一次，返回包装后的MethodHandle，类型必须与target相同
+	 */
+	public interface Interceptor {
+		MethodHandle intercept(Method method, MethodHandle target);
+	}
+
+	private static final String FACTORY = MethodHandleProxyFactory.class.getName();
+	private static final String MH = "java/lang/invoke/MethodHandle";
+	private static final String MH_DESC = "L" + MH + ";";
+	private static final AtomicLong COUNTER = new AtomicLong();
+	//生成的类在<clinit>中取走自己的MethodHandle
+	private static final ConcurrentHashMap<String, MethodHandle[]> PENDING = new ConcurrentHashMap<>();
+
+	private MethodHandleProxyFactory() {
+	}
+
+	public static <T> T newProxy(Class<T> iface, T target, Interceptor... interceptors) {
+		if (!iface.isInterface() || !Modifier.isPublic(iface.getModifiers())) {
+			throw new IllegalArgumentException("not a public interface: " + iface.getName());
+		}
+		List<Method> methods = new ArrayList<>(abstractMethods(iface).values());
+		MethodHandle[] handles = new MethodHandle[methods.size()];
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		try {
+			for (int i = 0; i < handles.length; i++) {
+				Method method = methods.get(i);
+				MethodType type = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+				MethodHandle handle = lookup.unreflect(method).bindTo(target);
+				for (Interceptor interceptor : interceptors) {
+					handle = interceptor.intercept(method, handle);
+				}
+				handles[i] = handle.asType(type);
+			}
+
+			String className = "com.lun.designpattern.proxy.example2.$MhProxy" + COUNTER.incrementAndGet();
+			byte[] bytes = generate(className.replace('.', '/'), iface, methods);
+			PENDING.put(className, handles);
+			try {
+				Class<?> proxyClass = new ProxyClassLoader(iface.getClassLoader()).define(className, bytes);
+				return iface.cast(proxyClass.getConstructor().newInstance());
+			} finally {
+				PENDING.remove(className);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("cannot create proxy for " + iface.getName(), e);
+		}
+	}
+
+	/**
+	 * 生成的类初始化时调用
+	 */
+	public static MethodHandle[] takeHandles(String className) {
+		MethodHandle[] handles = PENDING.remove(className);
+		if (handles == null) {
+			throw new IllegalStateException("no handles for " + className);
+		}
+		return handles;
+	}
+
+	/**
+	 * 接口（包括父接口）中所有非static的public方法，同名同描述符的只保留一个
+	 */
+	private static Map<String, Method> abstractMethods(Class<?> iface) {
+		Map<String, Method> methods = new LinkedHashMap<>();
+		for (Method method : iface.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+			String key = method.getName() + MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+					.toMethodDescriptorString();
+			if (!methods.containsKey(key)) {
+				methods.put(key, method);
+			}
+		}
+		return methods;
+	}
+
+	private static final class ProxyClassLoader extends ClassLoader {
+
+		ProxyClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			//接口可能来自启动类加载器，看不到工厂类
+			if (name.equals(FACTORY)) {
+				return MethodHandleProxyFactory.class;
+			}
+			return super.loadClass(name, resolve);
+		}
+	}
+
+	/**
+	 * 生成的类相当于：
+	 * <pre>
+	 * public final class $MhProxyN implements Iface {
+	 *     private static final MethodHandle h0, h1, ...;
+	 *     static { MethodHandle[] h = MethodHandleProxyFactory.takeHandles("$MhProxyN"); h0 = h[0]; ... }
+	 *     public R m0(A a, B b) { return (R) h0.invokeExact(a, b); }
+	 *     ...
+	 * }
+	 * </pre>
+	 * 方法体都没有分支，不需要StackMapTable
+	 */
+	private static byte[] generate(String className, Class<?> iface, List<Method> methods) {
+		ConstantPool pool = new ConstantPool();
+		int thisClass = pool.classRef(className);
+		int superClass = pool.classRef("java/lang/Object");
+		int ifaceClass = pool.classRef(iface.getName().replace('.', '/'));
+		int code = pool.utf8("Code");
+
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+
+			out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x0020); // ACC_SUPER
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(ifaceClass);
+
+			out.writeShort(methods.size());
+			for (int i = 0; i < methods.size(); i++) {
+				out.writeShort(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL);
+				out.writeShort(pool.utf8("h" + i));
+				out.writeShort(pool.utf8(MH_DESC));
+				out.writeShort(0);
+			}
+
+			out.writeShort(methods.size() + 2);
+
+			//public <init>() { super(); }
+			Bytecode init = new Bytecode();
+			init.op(0x2a); // aload_0
+			init.op(0xb7).u2(pool.methodRef("java/lang/Object", "<init>", "()V")); // invokespecial
+			init.op(0xb1); // return
+			writeMethod(out, pool, code, Modifier.PUBLIC, "<init>", "()V", init, 1, 1);
+
+			//static { ... }
+			Bytecode clinit = new Bytecode();
+			ldc(clinit, pool.string(className.replace('/', '.')));
+			clinit.op(0xb8).u2(pool.methodRef(FACTORY.replace('.', '/'), "takeHandles",
+					"(Ljava/lang/String;)[" + MH_DESC)); // invokestatic
+			clinit.op(0x4b); // astore_0
+			for (int i = 0; i < methods.size(); i++) {
+				clinit.op(0x2a); // aload_0
+				pushInt(clinit, pool, i);
+				clinit.op(0x32); // aaload
+				clinit.op(0xb3).u2(pool.fieldRef(className, "h" + i, MH_DESC)); // putstatic
+			}
+			clinit.op(0xb1);
+			writeMethod(out, pool, code, Modifier.STATIC, "<clinit>", "()V", clinit, 3, 1);
+
+			for (int i = 0; i < methods.size(); i++) {
+				Method method = methods.get(i);
+				String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+						.toMethodDescriptorString();
+				Bytecode m = new Bytecode();
+				m.op(0xb2).u2(pool.fieldRef(className, "h" + i, MH_DESC)); // getstatic
+				int slot = 1;
+				for (Class<?> parameter : method.getParameterTypes()) {
+					m.op(loadOpcode(parameter)).u1(slot);
+					slot += slots(parameter);
+				}
+				m.op(0xb6).u2(pool.methodRef(MH, "invokeExact", descriptor)); // invokevirtual
+				m.op(returnOpcode(method.getReturnType()));
+				int maxStack = Math.max(1 + slot - 1, slots(method.getReturnType()));
+				writeMethod(out, pool, code, Modifier.PUBLIC, method.getName(), descriptor, m, maxStack, slot);
+			}
+
+			out.writeShort(0); // class attributes
+
+			ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream(classFile);
+			header.writeInt(0xCAFEBABE);
+			header.writeShort(0);
+			header.writeShort(51); // Java 7
+			pool.writeTo(header);
+			body.writeTo(header);
+			header.flush();
+			return classFile.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeMethod(DataOutputStream out, ConstantPool pool, int code, int access, String name,
+			String descriptor, Bytecode bytecode, int maxStack, int maxLocals) throws IOException {
+		out.writeShort(access);
+		out.writeShort(pool.utf8(name));
+		out.writeShort(pool.utf8(descriptor));
+		out.writeShort(1);
+		out.writeShort(code);
+		byte[] bytes = bytecode.toByteArray();
+		out.writeInt(12 + bytes.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+	}
+
+	private static void ldc(Bytecode bytecode, int index) {
+		if (index < 256) {
+			bytecode.op(0x12).u1(index);
+		} else {
+			bytecode.op(0x13).u2(index);
+		}
+	}
+
+	private static void pushInt(Bytecode bytecode, ConstantPool pool, int value) {
+		if (value <= 5) {
+			bytecode.op(0x03 + value); // iconst_n
+		} else if (value <= Byte.MAX_VALUE) {
+			bytecode.op(0x10).u1(value); // bipush
+		} else if (value <= Short.MAX_VALUE) {
+			bytecode.op(0x11).u2(value); // sipush
+		} else {
+			ldc(bytecode, pool.integer(value));
+		}
+	}
+
+	private static int slots(Class<?> type) {
+		return type == void.class ? 0 : type == long.class || type == double.class ? 2 : 1;
+	}
+
+	private static int loadOpcode(Class<?> type) {
+		if (type == long.class) {
+			return 0x16; // lload
+		} else if (type == float.class) {
+			return 0x17; // fload
+		} else if (type == double.class) {
+			return 0x18; // dload
+		} else if (type.isPrimitive()) {
+			return 0x15; // iload
+		}
+		return 0x19; // aload
+	}
+
+	private static int returnOpcode(Class<?> type) {
+		if (type == void.class) {
+			return 0xb1; // return
+		} else if (type == long.class) {
+			return 0xad; // lreturn
+		} else if (type == float.class) {
+			return 0xae; // freturn
+		} else if (type == double.class) {
+			return 0xaf; // dreturn
+		} else if (type.isPrimitive()) {
+			return 0xac; // ireturn
+		}
+		return 0xb0; // areturn
+	}
+
+	private static final class Bytecode {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		Bytecode op(int opcode) {
+			bytes.write(opcode);
+			return this;
+		}
+
+		Bytecode u1(int value) {
+			bytes.write(value);
+			return this;
+		}
+
+		Bytecode u2(int value) {
+			bytes.write(value >>> 8);
+			bytes.write(value);
+			return this;
+		}
+
+		byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+	}
+
+	private static final class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> indexes = new HashMap<>();
+		private int count = 1;
+
+		int utf8(String value) {
+			return entry("U" + value, () -> {
+				out.writeByte(1);
+				out.writeUTF(value);
+			});
+		}
+
+		int classRef(String internalName) {
+			int name = utf8(internalName);
+			return entry("C" + internalName, () -> {
+				out.writeByte(7);
+				out.writeShort(name);
+			});
+		}
+
+		int string(String value) {
+			int utf8 = utf8(value);
+			return entry("S" + value, () -> {
+				out.writeByte(8);
+				out.writeShort(utf8);
+			});
+		}
+
+		int integer(int value) {
+			return entry("I" + value, () -> {
+				out.writeByte(3);
+				out.writeInt(value);
+			});
+		}
+
+		int fieldRef(String owner, String name, String descriptor) {
+			return memberRef(9, owner, name, descriptor);
+		}
+
+		int methodRef(String owner, String name, String descriptor) {
+			return memberRef(10, owner, name, descriptor);
+		}
+
+		private int memberRef(int tag, String owner, String name, String descriptor) {
+			int ownerIndex = classRef(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			int nameAndType = entry("N" + name + " " + descriptor, () -> {
+				out.writeByte(12);
+				out.writeShort(nameIndex);
+				out.writeShort(descriptorIndex);
+			});
+			return entry(tag + owner + "." + name + " " + descriptor, () -> {
+				out.writeByte(tag);
+				out.writeShort(ownerIndex);
+				out.writeShort(nameAndType);
+			});
+		}
+
+		private int entry(String key, Writer writer) {
+			Integer index = indexes.get(key);
+			if (index != null) {
+				return index;
+			}
+			try {
+				writer.write();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			indexes.put(key, count);
+			return count++;
+		}
+
+		void writeTo(DataOutputStream target) throws IOException {
+			if (count > 0xFFFF) {
+				throw new IllegalArgumentException("too many constants: " + count);
+			}
+			target.writeShort(count);
+			bytes.writeTo(target);
+		}
+
+		private interface Writer {
+			void write() throws IOException;
+		}
+	}
+
+	public static void main(String[] args) {
+		Image image = () -> {};
+
+		//只转发调用
+		Image jdkPassthrough = (Image) Proxy.newProxyInstance(Image.class.getClassLoader(), new Class<?>[] { Image.class },
+				(proxy, method, methodArgs) -> method.invoke(image, methodArgs));
+		Image mhPassthrough = newProxy(Image.class, image);
+
+		//带计时
+		TimingInterceptor timing = new TimingInterceptor();
+		Image jdkTimed = new TimerHandler(image).newProxy();
+		Image mhTimed = newProxy(Image.class, image, timing);
+
+		for (int round = 0; round < 2; round++) {
+			test("JDK动态代理 转发", jdkPassthrough);
+			test("MethodHandle代理 转发", mhPassthrough);
+			test("JDK动态代理 计时", jdkTimed);
+			test("MethodHandle代理 计时", mhTimed);
+		}
+		System.out.println("calls : " + timing.getHistograms().values().iterator().next().snapshot().getCount());
+	}
+
+	private static void test(String name, Image image) {
+		int size = 10000000;
+		long start = System.nanoTime();
+		for (int i = 0; i < size; i++) {
+			image.display();
+		}
+		System.out.println(name + "：" + (System.nanoTime() - start) / size + "ns/次");
+	}
+}
+
+/*
+JDK动态代理 转发：9ns/次
+MethodHandle代理 转发：5ns/次
+JDK动态代理 计时：144ns/次
+MethodHandle代理 计时：117ns/次
+JDK动态代理 转发：12ns/次
+MethodHandle代理 转发：6ns/次
+JDK动态代理 计时：128ns/次
+MethodHandle代理 计时：117ns/次
+calls : 20000000
+*/
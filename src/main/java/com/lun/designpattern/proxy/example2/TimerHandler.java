@@ -1,45 +1,131 @@
 package com.lun.designpattern.proxy.example2;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import com.lun.designpattern.proxy.example1.Image;
 import com.lun.designpattern.proxy.example1.RealImage;
 
+/**
+ * 统计方法耗时的动态代理
+ *
+ * 原来每次调用用currentTimeMillis计时并打印一行，毫秒精度测不出短方法，打印本身也比调用还贵。
+ * 现在每个Method对应一个LatencyHistogram，记录System.nanoTime()的差值，热路径上不分配对象也不输出；
+ * 通过getHistograms()随时查看分位数，或用exportEvery()按周期导出并清零。
+ *
+ * @author JK
+ *
+ */
 public class TimerHandler implements InvocationHandler {
 
 	private Object target;
+	private final ConcurrentHashMap<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
 	
 	public TimerHandler(Object target) {
 		this.target = target;
 	}
+
+	/**
+	 * 为target实现的所有接口创建计时代理
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T newProxy() {
+		return (T) Proxy.newProxyInstance(
+				target.getClass().getClassLoader(), 
+				target.getClass().getInterfaces(), 
+				this);
+	}
 	
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 		
-		long begin = System.currentTimeMillis();
-		
-		Object obj = method.invoke(target, args);
-		
-		long end = System.currentTimeMillis();
-		System.out.println("It's spent " + (end - begin)+ "ms");
+		LatencyHistogram histogram = histograms.get(method);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(method, m -> new LatencyHistogram());
+		}
 		
-		return obj;
+		long begin = System.nanoTime();
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			histogram.record(System.nanoTime() - begin);
+		}
+	}
+
+	public Map<Method, LatencyHistogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+
+	/**
+	 * 每隔period把各方法在这段时间内的分布交给exporter，并清零；取消返回的future即停止导出
+	 */
+	public ScheduledFuture<?> exportEvery(long period, TimeUnit unit, BiConsumer<Method, LatencyHistogram.Snapshot> exporter) {
+		return Exporter.SCHEDULER.scheduleAtFixedRate(() -> {
+			for (Map.Entry<Method, LatencyHistogram> e : histograms.entrySet()) {
+				exporter.accept(e.getKey(), e.getValue().snapshotAndReset());
+			}
+		}, period, period, unit);
+	}
+
+	//第一次导出时才创建线程
+	private static final class Exporter {
+		private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "latency-exporter");
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
 		RealImage image = new RealImage("18stop.jpg");
 		
 		TimerHandler timer = new TimerHandler(image);
 		
-		Image proxyImage = (Image)Proxy.newProxyInstance(
-				image.getClass().getClassLoader(), 
-				image.getClass().getInterfaces(), 
-				timer);
+		Image proxyImage = timer.newProxy();
 		
 		proxyImage.display();
 		
+		Method display = Image.class.getMethod("display");
+		System.out.println("display : " + timer.getHistograms().get(display).snapshot().getCount() + " call");
+
+		//大量短调用，每100ms导出一次这段时间内的分位数
+		Image quiet = () -> {};
+		TimerHandler quietTimer = new TimerHandler(quiet);
+		Image quietProxy = quietTimer.newProxy();
+		ScheduledFuture<?> export = quietTimer.exportEvery(100, TimeUnit.MILLISECONDS,
+				(method, snapshot) -> System.out.println(method.getName() + " : count>0 " + (snapshot.getCount() > 0)));
+		long end = System.currentTimeMillis() + 250;
+		while (System.currentTimeMillis() < end) {
+			quietProxy.display();
+		}
+		export.cancel(false);
+		quietTimer.getHistograms().get(display).snapshotAndReset();
+
+		for (int i = 0; i < 1000000; i++) {
+			quietProxy.display();
+		}
+		System.out.println(quietTimer.getHistograms().get(display).snapshot());
 	}
 
 }
+
+/*
+Loading 18stop.jpg
+Displaying 18stop.jpg
+display : 1 call
+display : count>0 true
+display : count>0 true
+count=1000000, mean=41ns, p50=39ns, p99=71ns, p999=311ns, max=52305ns
+*/
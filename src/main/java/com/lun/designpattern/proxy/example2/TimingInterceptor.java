@@ -0,0 +1,61 @@
+package com.lun.designpattern.proxy.example2;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TimerHandler的MethodHandle版本，供MethodHandleProxyFactory使用
+ *
+ * 每个方法的handle被包装成 nanoTime() → target(args) → record(耗时) 的组合，
+ * 耗时记录在该方法的LatencyHistogram中。抛出异常的调用不计入。
+ * 返回值直接按方法的实际返回类型透传，基本类型的返回值不会被装箱。
+ *
+ * @author JK
+ *
+ */
+public class TimingInterceptor implements MethodHandleProxyFactory.Interceptor {
+
+	private static final MethodHandle NANO_TIME;
+	private static final MethodHandle RECORD;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			NANO_TIME = lookup.findStatic(System.class, "nanoTime", MethodType.methodType(long.class));
+			RECORD = lookup.findStatic(TimingInterceptor.class, "record",
+					MethodType.methodType(void.class, LatencyHistogram.class, long.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final ConcurrentHashMap<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	@Override
+	public MethodHandle intercept(Method method, MethodHandle target) {
+		LatencyHistogram histogram = histograms.computeIfAbsent(method, m -> new LatencyHistogram());
+		Class<?> returnType = target.type().returnType();
+		MethodHandle record = RECORD.bindTo(histogram);
+		//(long begin, R result) -> { record(begin); return result; }，R是实际返回类型
+		MethodHandle after = returnType == void.class ? record
+				: MethodHandles.foldArguments(
+						MethodHandles.dropArguments(MethodHandles.identity(returnType), 0, long.class), record);
+		//(long begin, args...) -> after(begin, target(args...))
+		MethodHandle timed = MethodHandles.collectArguments(after, 1, target);
+		//(args...) -> timed(nanoTime(), args...)
+		return MethodHandles.foldArguments(timed, NANO_TIME);
+	}
+
+	public Map<Method, LatencyHistogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+
+	private static void record(LatencyHistogram histogram, long begin) {
+		histogram.record(System.nanoTime() - begin);
+	}
+}
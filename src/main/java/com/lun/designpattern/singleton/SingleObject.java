@@ -1,15 +1,18 @@
 package com.lun.designpattern.singleton;
 
 public class SingleObject {
-	   //创建 SingleObject 的一个对象
-	   private static SingleObject instance = new SingleObject();
+	   //静态内部类持有唯一的对象，第一次调用getInstance时才创建，
+	   //不再在SingleObject类加载时就初始化
+	   private static class Holder {
+	      private static final SingleObject INSTANCE = new SingleObject();
+	   }
 
 	   //让构造函数为 private，这样该类就不会被实例化
 	   private SingleObject(){}
 
-	   //获取唯一可用的对象
+	   //获取唯一可用的对象，类初始化完成后只是一次静态字段读取
 	   public static SingleObject getInstance(){
-	      return instance;
+	      return Holder.INSTANCE;
 	   }
 
 	   public void showMessage(){
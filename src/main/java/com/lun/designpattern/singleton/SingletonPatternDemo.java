@@ -11,5 +11,45 @@ public class SingletonPatternDemo {
 
 		      //显示消息
 		      object.showMessage();
+
+		      //启动时登记重量级单例，按依赖关系并行预热
+		      SingletonRegistry registry = new SingletonRegistry();
+		      registry.register("singleObject", SingleObject::getInstance);
+		      registry.register("config", () -> heavy("config", 200));
+		      registry.register("connectionPool", () -> heavy("connectionPool", 400), "config");
+		      registry.register("templateEngine", () -> heavy("templateEngine", 300), "config");
+		      registry.register("searchIndex", () -> heavy("searchIndex", 500));
+		      registry.register("orderService", () -> heavy("orderService", 100), "connectionPool", "templateEngine");
+
+		      StartupReport report = registry.warmUp(4);
+		      System.out.println("parallel warm-up faster than serial : " + (report.getWallNanos() < report.getTotalInitNanos()));
+		      System.out.println(report);
+
+		      String orderService = registry.get("orderService");
+		      System.out.println(orderService + ", same singleObject : " + (registry.get("singleObject") == SingleObject.getInstance()));
 		}
+
+	   //模拟耗时的初始化
+	   private static String heavy(String name, long millis) {
+		      try {
+		         Thread.sleep(millis);
+		      } catch (InterruptedException e) {
+		         Thread.currentThread().interrupt();
+		      }
+		      return name + " ready";
+	   }
 }
+
+/*
+Hello World!
+parallel warm-up faster than serial : true
+singleton             start(ms)   init(ms)  thread
+singleObject                 21          0  singleton-warmup-1
+config                       22        200  singleton-warmup-2
+searchIndex                  25        500  singleton-warmup-3
+templateEngine              225        300  singleton-warmup-4
+connectionPool              225        400  singleton-warmup-1
+orderService                625        100  singleton-warmup-1
+total init 1501ms, warm-up wall time 710ms
+orderService ready, same singleObject : true
+*/
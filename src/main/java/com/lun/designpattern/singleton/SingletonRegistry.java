@@ -0,0 +1,183 @@
+package com.lun.designpattern.singleton;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 懒加载单例的登记表，负责启动时的并行预热与耗时统计
+ *
+ * 登记的是创建单例的Supplier，通常就是静态内部类写法的getInstance方法引用，例如SingleObject::getInstance：
+ * 单例本身仍然由类加载机制保证只初始化一次，调用方直接用getInstance()时仍然只是一次静态字段读取。
+ * 其它Supplier由Lazy保证只调用一次，初始化完成后get()只是普通字段读取，不加锁、不读volatile。
+ *
+ * warmUp在启动时把尚未初始化的单例按依赖关系并行初始化：互不依赖的单例同时初始化，
+ * 依赖只能指向更早登记的单例，因此不会成环。每个单例的初始化耗时记录在StartupReport中。
+ *
+ * 登记应在启动阶段由一个线程完成，之后可以被任意线程并发读取。
+ *
+ * @author JK
+ *
+ */
+public class SingletonRegistry {
+
+	//get只读entries，不加锁；登记顺序单独保存在order中，只有register与snapshot会锁它
+	private final Map<String, Lazy<?>> entries = new ConcurrentHashMap<String, Lazy<?>>();
+	private final List<Lazy<?>> order = new ArrayList<Lazy<?>>();
+	private final long createdAt = System.nanoTime();
+
+	public <T> Lazy<T> register(String name, Supplier<T> factory, String... dependsOn) {
+		List<Lazy<?>> dependencies = new ArrayList<Lazy<?>>(dependsOn.length);
+		for (String dependency : dependsOn) {
+			Lazy<?> lazy = entries.get(dependency);
+			if (lazy == null) {
+				throw new IllegalArgumentException(name + " depends on unregistered singleton: " + dependency);
+			}
+			dependencies.add(lazy);
+		}
+		Lazy<T> lazy = new Lazy<T>(name, factory, dependencies, createdAt);
+		synchronized (order) {
+			if (entries.putIfAbsent(name, lazy) != null) {
+				throw new IllegalArgumentException("singleton already registered: " + name);
+			}
+			order.add(lazy);
+		}
+		return lazy;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(String name) {
+		Lazy<?> lazy = entries.get(name);
+		if (lazy == null) {
+			throw new IllegalArgumentException("singleton not registered: " + name);
+		}
+		return (T) lazy.get();
+	}
+
+	/**
+	 * 用parallelism个线程初始化所有尚未初始化的单例，全部完成后返回启动报告
+	 *
+	 * 某个单例初始化失败时，依赖它的单例不再初始化，warmUp抛出第一个失败的异常
+	 */
+	public StartupReport warmUp(int parallelism) {
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread thread = new Thread(r, "singleton-warmup-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		long begin = System.nanoTime();
+		try {
+			Map<Lazy<?>, CompletableFuture<?>> futures = new LinkedHashMap<Lazy<?>, CompletableFuture<?>>();
+			for (Lazy<?> lazy : snapshot()) {
+				CompletableFuture<?>[] dependencies = new CompletableFuture<?>[lazy.dependencies.size()];
+				for (int i = 0; i < dependencies.length; i++) {
+					dependencies[i] = futures.get(lazy.dependencies.get(i));
+				}
+				futures.put(lazy, CompletableFuture.allOf(dependencies).thenRunAsync(lazy::get, executor));
+			}
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		} finally {
+			executor.shutdown();
+		}
+		return report(System.nanoTime() - begin);
+	}
+
+	/**
+	 * 当前已初始化单例的耗时，不经过warmUp时wallNanos为0
+	 */
+	public StartupReport getReport() {
+		return report(0);
+	}
+
+	private StartupReport report(long wallNanos) {
+		List<StartupReport.Timing> timings = new ArrayList<StartupReport.Timing>();
+		for (Lazy<?> lazy : snapshot()) {
+			if (lazy.timing != null) {
+				timings.add(lazy.timing);
+			}
+		}
+		return new StartupReport(timings, wallNanos);
+	}
+
+	private List<Lazy<?>> snapshot() {
+		synchronized (order) {
+			return new ArrayList<Lazy<?>>(order);
+		}
+	}
+
+	/**
+	 * 只初始化一次的单例引用
+	 */
+	public static final class Lazy<T> implements Supplier<T> {
+
+		private final String name;
+		private final Supplier<T> factory;
+		private final List<Lazy<?>> dependencies;
+		private final long registryCreatedAt;
+
+		//非volatile：Value的final字段保证其它线程看到的是初始化完成的对象
+		private Value<T> value;
+		private volatile StartupReport.Timing timing;
+
+		Lazy(String name, Supplier<T> factory, List<Lazy<?>> dependencies, long registryCreatedAt) {
+			this.name = name;
+			this.factory = factory;
+			this.dependencies = dependencies;
+			this.registryCreatedAt = registryCreatedAt;
+		}
+
+		@Override
+		public T get() {
+			Value<T> current = value;
+			if (current != null) {
+				return current.instance;
+			}
+			return initialize();
+		}
+
+		private synchronized T initialize() {
+			if (value == null) {
+				for (Lazy<?> dependency : dependencies) {
+					dependency.get();
+				}
+				long begin = System.nanoTime();
+				T instance = factory.get();
+				long end = System.nanoTime();
+				timing = new StartupReport.Timing(name, begin - registryCreatedAt, end - begin,
+						Thread.currentThread().getName());
+				value = new Value<T>(instance);
+			}
+			return value.instance;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isInitialized() {
+			return timing != null;
+		}
+	}
+
+	private static final class Value<T> {
+		private final T instance;
+
+		Value(T instance) {
+			this.instance = instance;
+		}
+	}
+}
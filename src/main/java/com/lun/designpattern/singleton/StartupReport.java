@@ -0,0 +1,103 @@
+package com.lun.designpattern.singleton;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单例初始化耗时报告
+ *
+ * @author JK
+ *
+ */
+public class StartupReport {
+
+	private final List<Timing> timings;
+	private final long wallNanos;
+
+	StartupReport(List<Timing> timings, long wallNanos) {
+		List<Timing> sorted = new ArrayList<Timing>(timings);
+		Collections.sort(sorted, Comparator.comparingLong(Timing::getStartNanos));
+		this.timings = Collections.unmodifiableList(sorted);
+		this.wallNanos = wallNanos;
+	}
+
+	/**
+	 * 按开始时间排序
+	 */
+	public List<Timing> getTimings() {
+		return timings;
+	}
+
+	/**
+	 * warmUp从开始到全部完成的耗时
+	 */
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * 各单例初始化耗时之和，即串行初始化需要的时间
+	 */
+	public long getTotalInitNanos() {
+		long total = 0;
+		for (Timing timing : timings) {
+			total += timing.durationNanos;
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-20s %10s %10s  %s%n", "singleton", "start(ms)", "init(ms)", "thread"));
+		for (Timing timing : timings) {
+			sb.append(String.format("%-20s %10d %10d  %s%n", timing.name, millis(timing.startNanos),
+					millis(timing.durationNanos), timing.thread));
+		}
+		sb.append("total init ").append(millis(getTotalInitNanos())).append("ms");
+		if (wallNanos > 0) {
+			sb.append(", warm-up wall time ").append(millis(wallNanos)).append("ms");
+		}
+		return sb.toString();
+	}
+
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	public static final class Timing {
+		private final String name;
+		private final long startNanos;
+		private final long durationNanos;
+		private final String thread;
+
+		Timing(String name, long startNanos, long durationNanos, String thread) {
+			this.name = name;
+			this.startNanos = startNanos;
+			this.durationNanos = durationNanos;
+			this.thread = thread;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * 相对登记表创建时刻的开始时间
+		 */
+		public long getStartNanos() {
+			return startNanos;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		public String getThread() {
+			return thread;
+		}
+	}
+}